@@ -0,0 +1,89 @@
+package back_end;
+
+/**
+ * The size limits of a puzzle: how many pieces and operations it can have, and the range (inclusive) every piece
+ * must stay in. Combining pieces into a value outside the range is an illegal move, like dividing by zero.
+ *
+ * DEFAULT holds the limits the game has always used, which every solver handles. Bigger variants can have up to
+ * PIECES_LIMIT pieces, OPS_LIMIT operations and pieces up to PIECE_SIZE_LIMIT either way. Solvers size what they
+ * store from a puzzle's bounds, and the ones whose tables only make sense for small puzzles say so and refuse others.
+ *
+ * @author Kelton Finch
+ */
+public final class Bounds {
+
+	public static final int PIECES_LIMIT = 30; //sets of pieces are bitmasks in an int
+	public static final int OPS_LIMIT = 31; //sets of operations are bitmasks in an int
+	//keeps every value clear of Operation's error codes, and makes the product of any two values exact in a long
+	public static final int PIECE_SIZE_LIMIT = 1000000000;
+
+	public static final Bounds DEFAULT = new Bounds(GameState.MAX_PIECES, GameState.MAX_OPS,
+			GameState.MIN_PIECE_SIZE, GameState.MAX_PIECE_SIZE);
+
+	public final int maxPieces;
+	public final int maxOps;
+	public final int minPieceSize;
+	public final int maxPieceSize;
+
+	//true if these are the default limits, which take the faster paths in Operation
+	public final boolean isDefault;
+
+	/**
+	 * @throws IllegalArgumentException if a limit is past PIECES_LIMIT, OPS_LIMIT or PIECE_SIZE_LIMIT, or the piece
+	 * 		   range doesn't hold 0 and 1.
+	 */
+	public Bounds(int maxPieces, int maxOps, int minPieceSize, int maxPieceSize){
+		if(maxPieces < 1 || maxPieces > PIECES_LIMIT || maxOps < 1 || maxOps > OPS_LIMIT
+				|| minPieceSize > 0 || maxPieceSize < 1 || minPieceSize < -PIECE_SIZE_LIMIT || maxPieceSize > PIECE_SIZE_LIMIT)
+			throw new IllegalArgumentException("Bad bounds: " + maxPieces + " pieces, " + maxOps + " operations, pieces from "
+					+ minPieceSize + " to " + maxPieceSize);
+		this.maxPieces = maxPieces;
+		this.maxOps = maxOps;
+		this.minPieceSize = minPieceSize;
+		this.maxPieceSize = maxPieceSize;
+		this.isDefault = maxPieces == GameState.MAX_PIECES && maxOps == GameState.MAX_OPS
+				&& minPieceSize == GameState.MIN_PIECE_SIZE && maxPieceSize == GameState.MAX_PIECE_SIZE;
+	}
+
+	/**
+	 * @return True if pieces stay in the default range, so solvers' value tables can be sized the default way.
+	 */
+	public boolean hasDefaultPieceSizes(){
+		return minPieceSize == GameState.MIN_PIECE_SIZE && maxPieceSize == GameState.MAX_PIECE_SIZE;
+	}
+
+	public boolean contains(long value){
+		return value >= minPieceSize && value <= maxPieceSize;
+	}
+
+	/**
+	 * @return The largest absolute value a piece can have.
+	 */
+	public int maxMagnitude(){
+		return Math.max(maxPieceSize, -minPieceSize);
+	}
+
+	@Override
+	public boolean equals(Object o){
+		if(this == o)
+			return true;
+		if(!(o instanceof Bounds))
+			return false;
+		Bounds other = (Bounds) o;
+		return maxPieces == other.maxPieces && maxOps == other.maxOps
+				&& minPieceSize == other.minPieceSize && maxPieceSize == other.maxPieceSize;
+	}
+
+	@Override
+	public int hashCode(){
+		int h = maxPieces;
+		h = 31*h + maxOps;
+		h = 31*h + minPieceSize;
+		h = 31*h + maxPieceSize;
+		return h;
+	}
+
+	public String toString(){
+		return maxPieces + " pieces, " + maxOps + " operations, pieces from " + minPieceSize + " to " + maxPieceSize;
+	}
+}
@@ -4,11 +4,12 @@ import java.util.Arrays;
 
 public class GameState {
 
-	private static final int DEFAULT_MIN_GOAL = 20;
-	private static final int DEFAULT_MAX_GOAL = 70;
-	private static final int DEFAULT_NUM_PIECES = 5;
-	private static final int DEFAULT_MAX_PIECE = 6;
+	public static final int DEFAULT_MIN_GOAL = 20;
+	public static final int DEFAULT_MAX_GOAL = 70;
+	public static final int DEFAULT_NUM_PIECES = 5;
+	public static final int DEFAULT_MAX_PIECE = 6;
 	
+	//limits of the default Bounds
 	public static final int MAX_PIECES = 10;
 	public static final int MAX_OPS = 10;
 	
@@ -21,20 +22,36 @@ public class GameState {
 	private int numOps;
 	private int goal;
 	private boolean opsReusable;
+	private Bounds bounds;
 	
 	/**
-	 * Generates a new game state from explicitly given variables
+	 * Generates a new game state from explicitly given variables, within the default bounds
 	 * @param pieces A list of integers which represent the game pieces
 	 * @param ops A list of operations which represent the usable operations
 	 * @param goal The goal integer
 	 */
 	public GameState(int pieces[], Operation ops[], int numPieces, int numOps, int goal, boolean opsReusable){
+		this(pieces, ops, numPieces, numOps, goal, opsReusable, Bounds.DEFAULT);
+	}
+	
+	/**
+	 * Generates a new game state from explicitly given variables
+	 * @param pieces A list of integers which represent the game pieces
+	 * @param ops A list of operations which represent the usable operations
+	 * @param goal The goal integer
+	 * @param bounds The size limits of the puzzle. Every combine is checked against them.
+	 * @throws IllegalArgumentException if there are more pieces or operations than bounds allows.
+	 */
+	public GameState(int pieces[], Operation ops[], int numPieces, int numOps, int goal, boolean opsReusable, Bounds bounds){
+		if(numPieces > bounds.maxPieces || numOps > bounds.maxOps)
+			throw new IllegalArgumentException(numPieces + " pieces and " + numOps + " operations don't fit " + bounds);
 		this.pieces = pieces;
 		this.ops = ops;
 		this.goal = goal;
 		this.numPieces = numPieces;
 		this.numOps = numOps;
 		this.opsReusable = opsReusable;
+		this.bounds = bounds;
 	}
 	
 	/**
@@ -48,6 +65,7 @@ public class GameState {
 		this.numPieces = toCopy.numPieces;
 		this.numOps = toCopy.numOps;
 		this.opsReusable = toCopy.opsReusable;
+		this.bounds = toCopy.bounds;
 	}
 	
 	/**
@@ -66,6 +84,7 @@ public class GameState {
 		ops = defaultOps();
 		numOps = ops.length;
 		opsReusable = true;
+		bounds = Bounds.DEFAULT;
 	}
 	
 	/**
@@ -105,6 +124,14 @@ public class GameState {
 		return ops;
 	}
 	
+	public boolean isOpsReusable(){
+		return opsReusable;
+	}
+	
+	public Bounds getBounds(){
+		return bounds;
+	}
+	
 	public int pieceAt(int index){
 		return pieces[index];
 	}
@@ -125,11 +152,29 @@ public class GameState {
 		if(firstIndex == secondIndex)
 			throw new CombineException("Can't use same operand twice!");
 		
+		int result = tryCombine(firstIndex, secondIndex, opIndex);
+		if(!Operation.isValid(result))
+			throw new CombineException(Operation.invalidMessage(result));
+		return result;
+	}
+	
+	/**
+	 * Combines two pieces using the specified operation, without throwing if the combination is illegal.
+	 * New piece will always take the place of the second operand.
+	 * @param firstIndex The index of the first piece to be combined
+	 * @param secondIndex The index of the second piece to be combined. Must differ from firstIndex.
+	 * @param op The operation to combine with
+	 * @return The value of the combined piece, or an error code from Operation.evaluate (in which case this
+	 * 		   game state is left unchanged). Check with Operation.isValid.
+	 */
+	public int tryCombine(int firstIndex, int secondIndex, int opIndex){
 		int first = pieces[firstIndex];
 		int second = pieces[secondIndex];
 		Operation op = ops[opIndex];
 		
-		int result = op.operate(first, second);
+		int result = op.evaluate(first, second, bounds);
+		if(!Operation.isValid(result))
+			return result;
 
 		pieces[secondIndex] = result;
 		for(int i=firstIndex+1; i<numPieces; i++)
@@ -179,16 +224,31 @@ public class GameState {
 		return afterCombine(m.firstIndex,m.secondIndex,m.opIndex);
 	}
 	
+	/**
+	 * Combines two pieces using the specified operation, without throwing if the combination is illegal.
+	 * @param firstIndex The index of the first piece to be combined
+	 * @param secondIndex The index of the second piece to be combined. Must differ from firstIndex.
+	 * @param op The operation to combine with
+	 * @return A game state representing this game state after the specified combine operation,
+	 * 		   or null if the combination is illegal.
+	 */
+	public GameState tryAfterCombine(int firstIndex, int secondIndex, int opIndex){
+		GameState result = new GameState(this);
+		if(!Operation.isValid(result.tryCombine(firstIndex, secondIndex, opIndex)))
+			return null;
+		return result;
+	}
+	
 	public String moveString(Move m){
 		int first = pieces[m.firstIndex];
 		int second = pieces[m.secondIndex];
 		Operation op = ops[m.opIndex];
 		String result = first + " " + op + " " + second;
-		try {
-			result += " = " + ops[m.opIndex].operate(first, second);
-		} catch (CombineException e) {
-			result += " = INVALID MOVE: " + e.getMessage();
-		}
+		int value = op.evaluate(first, second, bounds);
+		if(Operation.isValid(value))
+			result += " = " + value;
+		else
+			result += " = INVALID MOVE: " + Operation.invalidMessage(value);
 		return result;
 	}
 	
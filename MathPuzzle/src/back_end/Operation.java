@@ -1,6 +1,15 @@
 package back_end;
 
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntBinaryOperator;
 
 /**
  * Representation of one of an operator for use in this Math Puzzle.
@@ -16,6 +25,18 @@ public class Operation {
 	public final boolean isCommutative;
 	public final String symbol;
 	
+	//Tells apart operations that behave differently: the opCode for a pre-built operation, or a distinct number below
+	//CUSTOM for each custom operation. Operations of the same kind are interchangeable.
+	public final int kind;
+	
+	//The range (inclusive) both operands must be in. Combinations outside it are illegal moves without the operation
+	//being applied. Pre-built operations take any legal piece.
+	public final int minOperand;
+	public final int maxOperand;
+	
+	private final IntBinaryOperator function; //applies a custom operation, null for pre-built ones
+	private final int table[]; //results for small operands, or null if computing them is cheap enough (see TABLE_MIN)
+	
 	public static final int CUSTOM = -1;
 	public static final int PLUS = 0;
 	public static final int MINUS = 1;
@@ -25,13 +46,38 @@ public class Operation {
 	public static final int ROOT = 5;
 	public static final int MODULO = 6;
 	
+	//The default piece range (see Bounds.DEFAULT), which evaluate(first, second) checks results against.
 	public static final int MAX_PIECE_SIZE = 999;
 	public static final int MIN_PIECE_SIZE = -999;
 	
+	//Results of evaluate that signal an illegal combination instead of a value. They sit below any legal piece value,
+	//so a result is legal exactly when isValid returns true for it.
+	public static final int DIVIDE_BY_ZERO = Integer.MIN_VALUE;
+	public static final int FRACTION = Integer.MIN_VALUE + 1;
+	public static final int TOO_LARGE = Integer.MIN_VALUE + 2;
+	public static final int TOO_SMALL = Integer.MIN_VALUE + 3;
+	public static final int UNSUPPORTED = Integer.MIN_VALUE + 4;
+	public static final int OUT_OF_DOMAIN = Integer.MIN_VALUE + 5;
+	public static final int NUM_INVALID_RESULTS = 6;
+	
+	private static final AtomicInteger lastCustomKind = new AtomicInteger(CUSTOM); //kinds are handed out downwards
+	
+	//Pre-built operations that cost more than a table lookup (DIVIDE, EXPONENT, ROOT and MODULO) look up the results
+	//for both operands from TABLE_MIN to TABLE_MIN + 2^TABLE_BITS - 1, which covers dice and most intermediate results.
+	//Each table is 64KB, built once and shared by every operation with that opCode.
+	private static final int TABLE_MIN = -32;
+	private static final int TABLE_BITS = 7;
+	private static final int tables[][] = new int[MODULO+1][];
+	
 	public Operation(int opCode){
 		Character.toChars(0x00F7);
 		
 		this.opCode = opCode;
+		this.kind = opCode;
+		this.minOperand = -Bounds.PIECE_SIZE_LIMIT;
+		this.maxOperand = Bounds.PIECE_SIZE_LIMIT;
+		this.function = null;
+		this.table = tableFor(opCode);
 		switch(opCode){
 		case PLUS:     isCommutative = true;  symbol = "+"; break;
 		case MINUS:    isCommutative = false; symbol = "-"; break;
@@ -45,54 +91,269 @@ public class Operation {
 		}
 	}
 	
-	public Operation(Method m, boolean isCommutative, String symbol){
-		opCode = CUSTOM;
+	/**
+	 * Creates a custom operation that takes any legal pieces.
+	 * @param function Applies the operation. It can reject a combination by returning one of the invalid results
+	 * 		  (e.g. FRACTION), and results outside the legal piece range are rejected like those of pre-built operations.
+	 */
+	public Operation(IntBinaryOperator function, boolean isCommutative, String symbol){
+		this(function, isCommutative, symbol, -Bounds.PIECE_SIZE_LIMIT, Bounds.PIECE_SIZE_LIMIT);
+	}
+	
+	/**
+	 * Creates a custom operation that only takes operands in the range minOperand to maxOperand (inclusive).
+	 * Solvers can skip combinations outside it without applying the operation.
+	 * @param function Applies the operation. See Operation(IntBinaryOperator, boolean, String).
+	 */
+	public Operation(IntBinaryOperator function, boolean isCommutative, String symbol, int minOperand, int maxOperand){
+		if(function == null || minOperand > maxOperand)
+			throw new IllegalArgumentException("Bad custom operation");
+		this.opCode = CUSTOM;
+		this.kind = lastCustomKind.decrementAndGet();
 		this.isCommutative = isCommutative;
 		this.symbol = symbol;
-		//TODO: NYI
+		this.minOperand = minOperand;
+		this.maxOperand = maxOperand;
+		this.function = function;
+		this.table = null; //custom functions might not always give the same result
+	}
+	
+	/**
+	 * Creates a custom operation from a static method taking two ints and returning an int.
+	 * The method is bound once, into the same kind of object a lambda would be, so applying the operation
+	 * costs about as much as a pre-built one rather than a reflective call.
+	 * @throws IllegalArgumentException if m isn't a static int method(int, int).
+	 */
+	public Operation(Method m, boolean isCommutative, String symbol){
+		this(bind(m), isCommutative, symbol);
+	}
+	
+	/*
+	 * Turns a static int method(int, int) into an IntBinaryOperator. Public methods of public classes go through
+	 * LambdaMetafactory, which the JIT inlines like any lambda. Other methods are called through a MethodHandle.
+	 */
+	private static IntBinaryOperator bind(Method m){
+		if(!Modifier.isStatic(m.getModifiers()) || m.getReturnType() != int.class
+				|| !Arrays.equals(m.getParameterTypes(), new Class<?>[]{int.class, int.class}))
+			throw new IllegalArgumentException("Custom operations must be static int methods taking (int, int): " + m);
+		
+		MethodHandles.Lookup lookup = MethodHandles.lookup();
+		try {
+			if(Modifier.isPublic(m.getModifiers()) && Modifier.isPublic(m.getDeclaringClass().getModifiers())){
+				MethodType type = MethodType.methodType(int.class, int.class, int.class);
+				CallSite site = LambdaMetafactory.metafactory(lookup, "applyAsInt",
+						MethodType.methodType(IntBinaryOperator.class), type, lookup.unreflect(m), type);
+				return (IntBinaryOperator) site.getTarget().invokeExact();
+			}
+			m.setAccessible(true);
+			final MethodHandle handle = lookup.unreflect(m);
+			return new IntBinaryOperator(){
+				@Override
+				public int applyAsInt(int first, int second){
+					try {
+						return (int) handle.invokeExact(first, second);
+					} catch (RuntimeException | Error e) {
+						throw e;
+					} catch (Throwable t) {
+						throw new IllegalStateException(t);
+					}
+				}
+			};
+		} catch (Throwable t) {
+			throw new IllegalArgumentException("Can't bind custom operation " + m, t);
+		}
 	}
 	
+	/**
+	 * Applies this operation, throwing if the combination isn't a legal move.
+	 * Prefer evaluate wherever illegal combinations are expected (e.g. in a search).
+	 */
 	public int operate(int first, int second) throws CombineException{
-		int result;
+		int result = evaluate(first, second);
+		if(!isValid(result))
+			throw new CombineException(invalidMessage(result));
+		return result;
+	}
+	
+	/**
+	 * Applies this operation without throwing, for pieces in the default range.
+	 * @return The result of the operation, or one of DIVIDE_BY_ZERO, FRACTION, TOO_LARGE, TOO_SMALL, UNSUPPORTED or
+	 * 		   OUT_OF_DOMAIN (e.g. an even root of a negative number) if the combination isn't a legal move.
+	 * 		   Check with isValid.
+	 */
+	public int evaluate(int first, int second){
+		if(table != null){
+			int row = first - TABLE_MIN;
+			int column = second - TABLE_MIN;
+			if((row | column) >>> TABLE_BITS == 0) //both operands are in the table
+				return table[row << TABLE_BITS | column];
+		}
+		if(opCode == CUSTOM)
+			return applyCustom(first, second, MIN_PIECE_SIZE, MAX_PIECE_SIZE);
+		return compute(opCode, first, second, MIN_PIECE_SIZE, MAX_PIECE_SIZE);
+	}
+	
+	/**
+	 * Applies this operation without throwing, for a puzzle with the given bounds. Results outside the bounds' piece
+	 * range are TOO_LARGE or TOO_SMALL, the same as evaluate(first, second) for the default range.
+	 */
+	public int evaluate(int first, int second, Bounds bounds){
+		if(bounds.isDefault)
+			return evaluate(first, second);
+		if(opCode == CUSTOM)
+			return applyCustom(first, second, bounds.minPieceSize, bounds.maxPieceSize);
+		return compute(opCode, first, second, bounds.minPieceSize, bounds.maxPieceSize);
+	}
+	
+	private int applyCustom(int first, int second, int min, int max){
+		if(function == null)
+			return UNSUPPORTED;
+		if(first < minOperand || first > maxOperand || second < minOperand || second > maxOperand)
+			return OUT_OF_DOMAIN;
+		int result = function.applyAsInt(first, second);
+		if(!isValid(result)) //rejected by the operation itself
+			return result;
+		return inRange(result, min, max);
+	}
+	
+	/*
+	 * Applies a pre-built operation without looking anything up, for pieces from min to max. Every result is exact:
+	 * anything that isn't a whole number is a FRACTION, never rounded or truncated, and sums and products are worked
+	 * out in a long, which holds them exactly for any pieces within Bounds.PIECE_SIZE_LIMIT.
+	 */
+	private static int compute(int opCode, int first, int second, int min, int max){
 		switch(opCode){
 		case PLUS:
-			result = first + second;
-			break;
+			return inRange((long) first + second, min, max);
 		case MINUS:
-			result = first - second;
-			break;
+			return inRange((long) first - second, min, max);
 		case TIMES:
-			result = first * second;
-			break;
+			return inRange((long) first * second, min, max);
 		case DIVIDE:
 			if(second == 0)
-				throw new CombineException("No dividing by zero");
+				return DIVIDE_BY_ZERO;
 			if(first % second != 0)
-				throw new CombineException("No fractions");
-			result = first / second;
-			break;
+				return FRACTION;
+			return inRange(first / second, min, max);
+		case EXPONENT:
+			return power(first, second, min, max);
+		case ROOT:
+			return root(first, second);
+		case MODULO:
+			if(second == 0)
+				return DIVIDE_BY_ZERO;
+			return inRange(first % second, min, max);
+		default:
+			return UNSUPPORTED;
+		}
+	}
+	
+	//base^exponent, stopping as soon as it's too large in magnitude for the range min to max
+	private static int power(int base, int exponent, int min, int max){
+		if(base == 0)
+			return exponent > 0 ? 0 : exponent == 0 ? 1 : DIVIDE_BY_ZERO;
+		if(base == 1)
+			return 1;
+		if(base == -1)
+			return (exponent & 1) == 0 ? 1 : -1;
+		if(exponent < 0) //magnitude between 0 and 1
+			return FRACTION;
+		long limit = Math.max(max, -(long) min);
+		long result = 1;
+		for(int e=0; e<exponent; e++){
+			result *= base; //exact: result was at most limit in magnitude
+			if(result > limit || result < -limit) //only grows from here, and the sign only depends on base and exponent
+				return base < 0 && (exponent & 1) == 1 ? TOO_SMALL : TOO_LARGE;
+		}
+		return inRange(result, min, max);
+	}
+	
+	//the degree-th root of radicand, if it's a whole number
+	private static int root(int radicand, int degree){
+		if(degree == 0)
+			return DIVIDE_BY_ZERO; //radicand^(1/0)
+		if(degree < 0){ //1 over the root, only whole for roots of 1 and -1
+			if(radicand == 0)
+				return DIVIDE_BY_ZERO;
+			int root = root(radicand, -degree);
+			if(!isValid(root) || root == 1 || root == -1)
+				return root;
+			return FRACTION;
+		}
+		if(radicand < 0){
+			if((degree & 1) == 0)
+				return OUT_OF_DOMAIN; //no even roots of negative numbers
+			int root = root(-radicand, degree);
+			return isValid(root) ? -root : root;
+		}
+		if(radicand <= 1 || degree == 1)
+			return radicand;
+		//the floating point root is within one of the exact one, so only its neighbours need checking exactly
+		int estimate = (int) Math.round(Math.pow(radicand, 1.0 / degree));
+		for(int candidate=Math.max(estimate-1, 2); candidate<=estimate+1; candidate++){
+			if(power(candidate, degree, -radicand, radicand) == radicand)
+				return candidate;
+		}
+		return FRACTION;
+	}
+	
+	private static int inRange(long result, int min, int max){
+		if(result > max)
+			return TOO_LARGE;
+		if(result < min)
+			return TOO_SMALL;
+		return (int) result;
+	}
+	
+	/*
+	 * Returns the shared result table for a pre-built operation, building it the first time, or null if the operation
+	 * doesn't use one.
+	 */
+	private static int[] tableFor(int opCode){
+		switch(opCode){
+		case DIVIDE:
 		case EXPONENT:
-			result = (int) Math.pow(first, second);
-			break;
 		case ROOT:
-			//TODO: add fraction detection
-			result = (int) Math.pow(first, 1/(double)(second));
-			break;
 		case MODULO:
-			result = first % second;
 			break;
-		case CUSTOM:
-			throw new CombineException("NYI"); //TODO: NYI
 		default:
-			throw new CombineException("Invalid op code");
+			return null;
+		}
+		synchronized(tables){
+			if(tables[opCode] == null){
+				int size = 1 << TABLE_BITS;
+				int table[] = new int[size * size];
+				for(int row=0; row<size; row++){
+					for(int column=0; column<size; column++)
+						table[row << TABLE_BITS | column] = compute(opCode, row + TABLE_MIN, column + TABLE_MIN,
+								MIN_PIECE_SIZE, MAX_PIECE_SIZE);
+				}
+				tables[opCode] = table;
+			}
+			return tables[opCode];
+		}
+	}
+	
+	/**
+	 * @return true if result (as returned by evaluate) is a legal piece value rather than an error code.
+	 */
+	public static boolean isValid(int result){
+		return result > OUT_OF_DOMAIN;
+	}
+	
+	/**
+	 * @return A message explaining an error code returned by evaluate.
+	 */
+	public static String invalidMessage(int result){
+		switch(result){
+		case DIVIDE_BY_ZERO: return "No dividing by zero";
+		case FRACTION:       return "No fractions";
+		case TOO_LARGE:      return "Result too large";
+		case TOO_SMALL:      return "Result too small";
+		case UNSUPPORTED:    return "Unsupported operation";
+		case OUT_OF_DOMAIN:  return "Operation not defined for those pieces";
+		default:             return "Valid result";
 		}
-		
-		if(result > MAX_PIECE_SIZE)
-			throw new CombineException("Result too large");
-		if(result < MIN_PIECE_SIZE)
-			throw new CombineException("Result too small");
-		
-		return result;
 	}
 	
 	public String toString(){
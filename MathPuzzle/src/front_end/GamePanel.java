@@ -15,16 +15,30 @@ import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
 import java.awt.geom.Rectangle2D;
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 import java.util.Stack;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
 
 import javax.swing.JButton;
 import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
 
-import solver.PuzzleSolver;
+import solver.AsyncSolver;
+import solver.PositionEvaluator;
+import solver.ProgressListener;
+import solver.PuzzleGenerator;
+import solver.PuzzleQueue;
+import solver.SolvabilityAtlas;
 import back_end.GameState;
 import back_end.CombineException;
+import back_end.Move;
 
 public class GamePanel extends JPanel implements ActionListener, ComponentListener, MouseListener, MouseMotionListener {
 	
@@ -34,8 +48,7 @@ public class GamePanel extends JPanel implements ActionListener, ComponentListen
 	private static final float OPS_HORIZONTAL_MULT = 0.75f; //percentage down the window to draw ops
 	private static final int DRAGLINE_WIDTH = 4; //width of line drawn when mouse is dragged
 	private static final int MARGIN = 5; //margin, in pixels, afforded to some elements
-	
-	private static final int MAX_NEWGAME_GENERATE_ATTEMPTS = 20; //maximum attempts to generate a new solvable game under current settings
+	private static final long NEW_GAME_WAIT_MILLIS = 200; //how long a new game waits on the queue before rolling one here
 	
 	//some preset colors
 	protected static final Color BORDER_COLOR = Color.decode("#707070");
@@ -49,6 +62,12 @@ public class GamePanel extends JPanel implements ActionListener, ComponentListen
 	protected static final Color BAD_MESSAGE_COLOR = Color.decode("#ffb0b0");
 	
 	private Stack<GameState> gameHistory; //the progression of game states. Bottom is initial state, top is current state.
+	private SolvabilityAtlas atlas; //precomputed solvability of common rolls, or null if there's no atlas file
+	private PuzzleQueue puzzles; //solvable games generated ahead of time
+	private int minGoal, maxGoal, numPieces, maxPiece; //the settings games are generated with
+	private AsyncSolver hintSolver; //finds hints off the event dispatch thread
+	private CompletableFuture<Stack<Move>> pendingHint; //the hint being searched for, or null
+	private CompletableFuture<PositionEvaluator> evaluator; //knows which positions of the current game are solvable
 	
 	private Dimension size; //The dimensions of the game panel, in pixels
 	private int width, height; //the width and height of the game panel, in pixels
@@ -94,8 +113,26 @@ public class GamePanel extends JPanel implements ActionListener, ComponentListen
 		addMouseMotionListener(this);
 		addComponentListener(this);
 		
+		try {
+			atlas = SolvabilityAtlas.open(new File(SolvabilityAtlas.DEFAULT_FILE));
+		} catch (IOException e) {
+			atlas = null; //rolls are analyzed by the generator instead
+		}
+		minGoal = GameState.DEFAULT_MIN_GOAL;
+		maxGoal = GameState.DEFAULT_MAX_GOAL;
+		numPieces = GameState.DEFAULT_NUM_PIECES;
+		maxPiece = GameState.DEFAULT_MAX_PIECE;
+		puzzles = new PuzzleQueue(new PuzzleGenerator(minGoal, maxGoal, numPieces, maxPiece, PuzzleGenerator.Weighting.DICE_ROLL,
+				new Random(), atlas));
+		hintSolver = new AsyncSolver(new Executor(){
+			@Override
+			public void execute(Runnable r){
+				SwingUtilities.invokeLater(r);
+			}
+		});
 		gameHistory = new Stack<GameState>();
-		gameHistory.push(new GameState()); //TODO: this will have to be changed when preferences changed
+		gameHistory.push(nextGame());
+		startEvaluating();
 		
 		goalLocs = new ArrayList<Dimension>();
 		piecesLocs = new ArrayList<Dimension>();
@@ -108,8 +145,6 @@ public class GamePanel extends JPanel implements ActionListener, ComponentListen
 		opTiles = new ArrayList<PieceTile>(GameState.MAX_OPS);
 		updateTiles();
 		
-		showMessage = false;
-		
 		updateDimensions();
 		revalidate();
 		repaint();
@@ -181,6 +216,7 @@ public class GamePanel extends JPanel implements ActionListener, ComponentListen
 		loc = goalLocs.get(1);
 		goalTile.setBounds(loc.width, loc.height, boxDim*2, boxDim);
 		add(goalTile);
+		checkDeadEnd();
 		
 		loc = goalLocs.get(2);
 		resetButton.setBounds(loc.width, loc.height, (int) (boxDim*1.5), boxDim);
@@ -259,26 +295,12 @@ public class GamePanel extends JPanel implements ActionListener, ComponentListen
 		//if a click happens in a child, this fails to release normally, so doing it manually here.
 		//kind of a hack :/
 		mouseDragging = false;
+		cancelHint();
 		clearMessage();
 		gameHistory.clear();
 		
-		GameState newGameState = new GameState();
-		int attempts = 0;
-		PuzzleSolver solver = new PuzzleSolver();
-		boolean solvable = false;
-		while(!solvable){
-			if(solver.solve(newGameState) != null){
-				solvable = true;
-			}
-			else if(attempts >= MAX_NEWGAME_GENERATE_ATTEMPTS){
-				break;
-				//TODO: change this to for loop? Make it handle the bad attempt
-			}
-			attempts++;
-			newGameState = new GameState(); //TODO: this line must be changed when prefs implemented
-		}
-		
-		gameHistory.push(newGameState);
+		gameHistory.push(nextGame());
+		startEvaluating();
 		goalTile.setSymbol(gameHistory.peek().getGoal() + "");
 		updateTiles();
 		resetTurnProgress();
@@ -286,12 +308,47 @@ public class GamePanel extends JPanel implements ActionListener, ComponentListen
 		repaint();
 	}
 	
+	/**
+	 * Changes the kind of game newGame starts. Games already generated with the old settings are thrown away.
+	 * @param minGoal The lowest the goal can be generated (inclusive)
+	 * @param maxGoal The highest the goal can be generated (exclusive)
+	 * @param numPieces The number of pieces to be generated
+	 * @param maxPiece Pieces generated will be between 1 and maxPiece (inclusive)
+	 */
+	public void setGameParameters(int minGoal, int maxGoal, int numPieces, int maxPiece){
+		this.minGoal = minGoal;
+		this.maxGoal = maxGoal;
+		this.numPieces = numPieces;
+		this.maxPiece = maxPiece;
+		puzzles.setGenerator(new PuzzleGenerator(minGoal, maxGoal, numPieces, maxPiece, PuzzleGenerator.Weighting.DICE_ROLL,
+				new Random(), atlas));
+	}
+	
+	/*
+	 * Takes the next game from the queue. If none is ready in time, or generating them failed, rolls one here instead
+	 * (which may have no solution) and says so, rather than holding up the event dispatch thread.
+	 */
+	private GameState nextGame(){
+		String problem;
+		try {
+			GameState puzzle = puzzles.next(NEW_GAME_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+			if(puzzle != null)
+				return puzzle;
+			problem = "Still generating games, this one may have no solution";
+		} catch (IllegalStateException e) {
+			problem = "Couldn't generate a solvable game, this one may have no solution";
+		}
+		setMessage(problem, BAD_MESSAGE_COLOR);
+		return new GameState(minGoal, maxGoal, numPieces, maxPiece);
+	}
+	
 	/*
 	 * executes the move specified by firstIndex, secondIndex, opIndex.
 	 * Doesn't check bounds. Don't call this until the indices are set!
 	 */
 	private void doMove(){
 		System.out.println("Doing a move!"); //TODO: Remove debugging
+		cancelHint();
 		clearMessage();
 		try {
 			gameHistory.push(gameHistory.peek().afterCombine(firstIndex, secondIndex, opIndex));
@@ -309,6 +366,7 @@ public class GamePanel extends JPanel implements ActionListener, ComponentListen
 	 */
 	private void doUndo(){
 		System.out.println("Doing an undo!"); //TODO: Remove debugging
+		cancelHint();
 		clearMessage();
 		if(progress != ChoiceProgress.FIRST){
 			resetTurnProgress();
@@ -328,6 +386,7 @@ public class GamePanel extends JPanel implements ActionListener, ComponentListen
 	 */
 	private void doReset(){
 		System.out.println("Doing a reset!"); //TODO: Remove debugging
+		cancelHint();
 		clearMessage();
 		while(gameHistory.size() != 1)
 			gameHistory.pop();
@@ -337,6 +396,54 @@ public class GamePanel extends JPanel implements ActionListener, ComponentListen
 		repaint();
 	}
 	
+	/**
+	 * Searches for the next move of a solution from the current game state, in the background.
+	 * The message bar shows the search's progress, then the move (or that there's no solution from here).
+	 */
+	public void showHint(){
+		cancelHint();
+		final GameState gameState = gameHistory.peek();
+		if(gameState.getNumPieces() == 1)
+			return;
+		setMessage("Thinking...");
+		final CompletableFuture<Stack<Move>> hint = hintSolver.solve(gameState, new ProgressListener(){
+			@Override
+			public void progress(long nodesSearched, int depth){
+				setMessage("Thinking... " + nodesSearched + " positions");
+			}
+		});
+		pendingHint = hint;
+		hint.whenComplete(new BiConsumer<Stack<Move>, Throwable>(){
+			@Override
+			public void accept(final Stack<Move> solution, final Throwable failure){
+				SwingUtilities.invokeLater(new Runnable(){
+					@Override
+					public void run(){
+						if(pendingHint != hint) //cancelled, or replaced by a newer hint
+							return;
+						pendingHint = null;
+						if(failure != null)
+							setMessage("Hint failed", BAD_MESSAGE_COLOR);
+						else if(solution == null)
+							setMessage("No solution from here", BAD_MESSAGE_COLOR);
+						else
+							setMessage("Hint: " + gameState.moveString(solution.peek()));
+					}
+				});
+			}
+		});
+	}
+	
+	/*
+	 * Stops searching for a hint, if one is being searched for.
+	 */
+	private void cancelHint(){
+		if(pendingHint != null){
+			pendingHint.cancel(true);
+			pendingHint = null;
+		}
+	}
+	
 	private void resetTurnProgress(){
 		progress = ChoiceProgress.FIRST;
 		firstIndex = -1;
@@ -349,8 +456,49 @@ public class GamePanel extends JPanel implements ActionListener, ComponentListen
 		repaint();
 	}
 	
+	/*
+	 * Starts analyzing the current game in the background, for checkDeadEnd.
+	 * The dead end indicator stays off until the analysis is done.
+	 */
+	private void startEvaluating(){
+		if(evaluator != null)
+			evaluator.cancel(false);
+		final CompletableFuture<PositionEvaluator> analysis = hintSolver.evaluate(gameHistory.peek());
+		evaluator = analysis;
+		analysis.thenRun(new Runnable(){
+			@Override
+			public void run(){
+				SwingUtilities.invokeLater(new Runnable(){
+					@Override
+					public void run(){
+						if(evaluator == analysis) //still the current game
+							checkDeadEnd();
+					}
+				});
+			}
+		});
+	}
+	
+	/*
+	 * Marks the goal tile if the current game state can no longer be solved. Doesn't mark finished games.
+	 */
+	private void checkDeadEnd(){
+		if(goalTile == null)
+			return;
+		GameState gameState = gameHistory.peek();
+		PositionEvaluator positions = null;
+		if(evaluator != null && evaluator.isDone() && !evaluator.isCompletedExceptionally())
+			positions = evaluator.join();
+		if(positions != null && gameState.getNumPieces() > 1 && !positions.isSolvable(gameState))
+			goalTile.setBackgroundColor(BAD_MESSAGE_COLOR);
+		else
+			goalTile.clearBackground();
+		goalTile.repaint();
+	}
+	
 	/*
 	 * Checks if the current game state is a winning (or an incorrect) state. Changes the message if needed.
+	 * Also updates the dead end indicator.
 	 */
 	private void checkVictory(){
 		GameState gameState = gameHistory.peek();
@@ -362,6 +510,7 @@ public class GamePanel extends JPanel implements ActionListener, ComponentListen
 				setMessage("NOPE", BAD_MESSAGE_COLOR);
 			}
 		}
+		checkDeadEnd();
 	}
 	
 	/*
@@ -44,14 +44,17 @@ public class MathPuzzleSwing extends JFrame implements ActionListener {
         
         //add buttons
         JButton rollAgainButton = new JButton("Roll Again");
+        JButton hintButton = new JButton("Hint");
         JButton preferencesButton = new JButton("Preferences");
         JButton quitButton = new JButton("Quit");
         
         rollAgainButton.addActionListener(this);
+        hintButton.addActionListener(this);
         preferencesButton.addActionListener(this);
         quitButton.addActionListener(this);
         
         buttonPanel.add(rollAgainButton);
+        buttonPanel.add(hintButton);
         buttonPanel.add(preferencesButton);
         buttonPanel.add(quitButton);
         
@@ -98,6 +101,10 @@ public class MathPuzzleSwing extends JFrame implements ActionListener {
 			swapToGamePanel();
 			repaint();
 		}
+		else if(command.equals("Hint")){
+			swapToGamePanel();
+			gamePanel.showHint();
+		}
 		else if(command.equals("Preferences")){
 			swapToPreferencesPanel();
 			repaint();
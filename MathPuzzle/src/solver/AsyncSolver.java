@@ -0,0 +1,143 @@
+package solver;
+
+import java.util.Stack;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import back_end.GameState;
+import back_end.Move;
+
+/**
+ * Solves game states on a background thread, so callers like the UI never wait on a search.
+ *
+ * Each solve returns a CompletableFuture. Cancelling the future stops its search at the next checkpoint, which comes
+ * every few milliseconds of searching, and frees the worker for the next solve. While a search runs, progress is
+ * reported through a ProgressListener on the caller's choice of executor (e.g. SwingUtilities::invokeLater).
+ * Games are analyzed (see evaluate) on a thread of their own, so a solve never waits behind an analysis.
+ *
+ * @author Kelton Finch
+ */
+public class AsyncSolver {
+
+	private static final long PROGRESS_INTERVAL_NANOS = 100 * 1000000L; //at most one progress report per 100ms
+
+	private final ExecutorService worker;
+	private final ExecutorService analyzer;
+	private final Executor callbackExecutor;
+
+	/**
+	 * @param callbackExecutor Where progress reports are delivered.
+	 */
+	public AsyncSolver(Executor callbackExecutor){
+		this.callbackExecutor = callbackExecutor;
+		this.worker = Executors.newSingleThreadExecutor(daemonThreads("AsyncSolver worker"));
+		this.analyzer = Executors.newSingleThreadExecutor(daemonThreads("AsyncSolver analyzer"));
+	}
+
+	private static ThreadFactory daemonThreads(final String name){
+		return new ThreadFactory(){
+			@Override
+			public Thread newThread(Runnable r){
+				Thread thread = new Thread(r, name);
+				thread.setDaemon(true);
+				return thread;
+			}
+		};
+	}
+
+	/**
+	 * Starts solving a game state in the background. Solves run one at a time, in the order they were started.
+	 * Puzzles MeetInTheMiddleSolver suits are handed to it, as PuzzleSolver.setMeetInTheMiddle(true) would.
+	 * @param gs The game state to be solved for. Copied, so it can be changed afterwards.
+	 * @param listener Receives progress reports, or null for none.
+	 * @return A future for the solution, in the same form PuzzleSolver.solve returns (null if there is none).
+	 * 		   Cancel it to stop the search.
+	 */
+	public CompletableFuture<Stack<Move>> solve(GameState gs, final ProgressListener listener){
+		final GameState toSolve = new GameState(gs);
+		final CompletableFuture<Stack<Move>> result = new CompletableFuture<Stack<Move>>();
+		worker.execute(new Runnable(){
+			@Override
+			public void run(){
+				if(result.isDone()) //cancelled before it started
+					return;
+				InPlaceSearch.Checkpoint checkpoint = new InPlaceSearch.Checkpoint(){
+					private long lastReport = System.nanoTime();
+
+					@Override
+					public boolean keepGoing(final long nodes, final int depth){
+						if(result.isDone())
+							return false;
+						long now = System.nanoTime();
+						if(listener != null && now - lastReport >= PROGRESS_INTERVAL_NANOS){
+							lastReport = now;
+							callbackExecutor.execute(new Runnable(){
+								@Override
+								public void run(){
+									if(!result.isDone()) //no reports after the solve is over
+										listener.progress(nodes, depth);
+								}
+							});
+						}
+						return true;
+					}
+				};
+				try {
+					if(MeetInTheMiddleSolver.suits(toSolve)){
+						result.complete(new MeetInTheMiddleSolver().solve(toSolve, checkpoint));
+						return;
+					}
+					InPlaceSearch search = new InPlaceSearch(toSolve);
+					boolean solved = search.run(checkpoint);
+					if(!search.wasAbandoned())
+						result.complete(solved ? Step.toMoves(toSolve, search.line()) : null);
+				} catch (CancellationException e) {
+					//the future was cancelled, so there's nothing to complete
+				} catch (RuntimeException e) {
+					result.completeExceptionally(e);
+				}
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Starts analyzing a game in the background. Analyses run one at a time, on their own thread.
+	 * @param root The starting position of the game. Copied, so it can be changed afterwards.
+	 * @return A future for an evaluator of every position reachable from root. Cancel it to stop the analysis, which
+	 * 		   then stops within a few milliseconds.
+	 */
+	public CompletableFuture<PositionEvaluator> evaluate(GameState root){
+		final GameState toAnalyze = new GameState(root);
+		final CompletableFuture<PositionEvaluator> result = new CompletableFuture<PositionEvaluator>();
+		analyzer.execute(new Runnable(){
+			@Override
+			public void run(){
+				if(result.isDone())
+					return;
+				try {
+					result.complete(new PositionEvaluator(toAnalyze, new InPlaceSearch.Checkpoint(){
+						@Override
+						public boolean keepGoing(long nodes, int depth){
+							return !result.isDone();
+						}
+					}));
+				} catch (CancellationException e) {
+					//the future was cancelled, so there's nothing to complete
+				} catch (RuntimeException e) {
+					result.completeExceptionally(e);
+				}
+			}
+		});
+		return result;
+	}
+
+	public void shutdown(){
+		worker.shutdownNow();
+		analyzer.shutdownNow();
+	}
+}
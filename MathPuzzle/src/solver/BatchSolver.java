@@ -0,0 +1,206 @@
+package solver;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Stack;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import back_end.GameState;
+import back_end.Move;
+
+/**
+ * Solves many game states at once, for bulk scans.
+ *
+ * The batch is split in halves into fork/join tasks until each task holds a handful of game states, and idle workers
+ * steal whole halves from busy ones. Each task solves its game states with its own PuzzleSolver, searching in place.
+ * If a SolvabilityAtlas is set, game states it covers are answered from it without searching.
+ *
+ * With a shared cache (see setSharedCache), workers instead run a memoizing PuzzleSolver over one cache shared by the
+ * whole batch (and kept between batches, up to a limit), so a canonical sub-state solved for one puzzle is never
+ * searched again for any other puzzle on any thread. Memoized search allocates a game state and a key per node, though,
+ * so it's several times slower per puzzle than searching in place unless the batch keeps reaching the same sub-states.
+ *
+ * @author Kelton Finch
+ */
+public class BatchSolver {
+
+	private static final int MAX_TASK_SIZE = 16; //tasks with at most this many game states solve them instead of splitting
+	public static final int DEFAULT_CACHE_LIMIT = 1 << 21; //cached states, a few hundred megabytes at most
+
+	private final ForkJoinPool pool;
+	private final ConcurrentHashMap<CanonicalState, List<Step>> memo;
+	private volatile SolvabilityAtlas atlas; //consulted before searching, if set
+	private volatile boolean sharedCache; //whether workers memoize into memo
+	private volatile int cacheLimit = DEFAULT_CACHE_LIMIT;
+
+	private final AtomicLong nodesExpanded = new AtomicLong();
+	private final AtomicLong cacheHits = new AtomicLong();
+	private final AtomicLong cacheMisses = new AtomicLong();
+
+	/**
+	 * Creates a solver that uses one thread per available processor.
+	 */
+	public BatchSolver(){
+		this(new ForkJoinPool());
+	}
+
+	public BatchSolver(int parallelism){
+		this(new ForkJoinPool(parallelism));
+	}
+
+	public BatchSolver(ForkJoinPool pool){
+		this.pool = pool;
+		this.memo = new ConcurrentHashMap<CanonicalState, List<Step>>();
+	}
+
+	/**
+	 * Solves every game state in the batch.
+	 * @param states The game states to be solved for. Not modified.
+	 * @return One entry per game state, in the same order: a solution in the same form PuzzleSolver.solve returns,
+	 * 		   or null if that game state has no solution.
+	 */
+	public List<Stack<Move>> solveAll(Collection<GameState> states){
+		return solveAll(states, null);
+	}
+
+	/**
+	 * Solves every game state in the batch, adding what the solves did to stats (see PuzzleSolver.solve(gs, stats)).
+	 * Game states answered from the atlas aren't searched, so they aren't counted.
+	 * @param stats The statistics to add to, or null to count nothing. Not changed until every worker is done with it.
+	 * @see #solveAll(Collection)
+	 */
+	public List<Stack<Move>> solveAll(Collection<GameState> states, SolveStats stats){
+		GameState batch[] = states.toArray(new GameState[states.size()]);
+		//never resized, so workers can each set their own entries
+		List<Stack<Move>> results = new ArrayList<Stack<Move>>(Collections.nCopies(batch.length, (Stack<Move>) null));
+		if(batch.length > 0)
+			pool.invoke(new SolveTask(batch, results, 0, batch.length, stats));
+		return results;
+	}
+
+	/**
+	 * Solves every game state in the stream. The stream is consumed before any solving starts.
+	 * @see #solveAll(Collection)
+	 */
+	public List<Stack<Move>> solveAll(Stream<GameState> states){
+		List<GameState> batch = states.collect(Collectors.toList());
+		return solveAll(batch);
+	}
+
+	/**
+	 * Makes the solver answer game states the atlas covers from the atlas, and only search the rest.
+	 * @param atlas The atlas to consult, or null to always search.
+	 */
+	public void setAtlas(SolvabilityAtlas atlas){
+		this.atlas = atlas;
+	}
+
+	public long getNodesExpanded(){
+		return nodesExpanded.get();
+	}
+
+	public long getCacheHits(){
+		return cacheHits.get();
+	}
+
+	public long getCacheMisses(){
+		return cacheMisses.get();
+	}
+
+	public int getCacheSize(){
+		return memo.size();
+	}
+
+	/**
+	 * Makes workers share one memoizing cache, instead of each searching in place (the default).
+	 * @param sharedCache True to memoize into the shared cache from the next batch on.
+	 */
+	public void setSharedCache(boolean sharedCache){
+		this.sharedCache = sharedCache;
+	}
+
+	/**
+	 * Sets how many states the shared cache may hold. Whenever a task finishes with the cache over the limit, the cache
+	 * is cleared, so long runs of batches don't keep every state they ever solved.
+	 * @param cacheLimit The most states to keep, or 0 to clear the cache after every task.
+	 */
+	public void setCacheLimit(int cacheLimit){
+		this.cacheLimit = cacheLimit;
+	}
+
+	/**
+	 * Resets the node and cache counters. Cached results are kept.
+	 */
+	public void resetStatistics(){
+		nodesExpanded.set(0);
+		cacheHits.set(0);
+		cacheMisses.set(0);
+	}
+
+	/**
+	 * Drops every cached result. Batches being solved carry on, searching again for anything they would have found cached.
+	 */
+	public void clearCache(){
+		memo.clear();
+	}
+
+	public void shutdown(){
+		pool.shutdown();
+	}
+
+	private class SolveTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final GameState batch[];
+		private final List<Stack<Move>> results;
+		private final int start;
+		private final int end;
+		private final SolveStats stats; //may be null
+
+		SolveTask(GameState batch[], List<Stack<Move>> results, int start, int end, SolveStats stats){
+			this.batch = batch;
+			this.results = results;
+			this.start = start;
+			this.end = end;
+			this.stats = stats;
+		}
+
+		@Override
+		protected void compute(){
+			if(end - start > MAX_TASK_SIZE){
+				int middle = (start + end) >>> 1;
+				invokeAll(new SolveTask(batch, results, start, middle, stats),
+						new SolveTask(batch, results, middle, end, stats));
+				return;
+			}
+
+			PuzzleSolver solver = sharedCache ? new PuzzleSolver(memo) : new PuzzleSolver();
+			SolvabilityAtlas atlas = BatchSolver.this.atlas;
+			SolveStats taskStats = stats == null ? null : new SolveStats(); //added to stats once, at the end
+			for(int i=start; i<end; i++){
+				if(atlas != null && atlas.covers(batch[i]))
+					results.set(i, atlas.solution(batch[i]));
+				else
+					results.set(i, solver.solve(batch[i], taskStats));
+			}
+			if(memo.size() > cacheLimit)
+				memo.clear();
+			if(stats != null){
+				synchronized(stats){
+					stats.add(taskStats);
+				}
+			}
+			nodesExpanded.addAndGet(solver.getNodesExpanded());
+			cacheHits.addAndGet(solver.getCacheHits());
+			cacheMisses.addAndGet(solver.getCacheMisses());
+		}
+	}
+}
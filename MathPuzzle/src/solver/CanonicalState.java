@@ -0,0 +1,88 @@
+package solver;
+
+import java.util.Arrays;
+
+import back_end.Bounds;
+import back_end.GameState;
+import back_end.Operation;
+
+/**
+ * An order-independent key for a game state: sorted pieces, sorted op kinds, the goal and the puzzle's bounds.
+ * Two game states with equal canonical states have exactly the same solutions, up to piece order.
+ *
+ * @author Kelton Finch
+ */
+public final class CanonicalState {
+
+	//goal to key results that hold for every goal
+	public static final int ANY_GOAL = Integer.MIN_VALUE;
+
+	private final int pieces[];
+	private final int ops[];
+	private final int goal;
+	private final boolean opsReusable;
+	private final Bounds bounds;
+	private final int hash;
+
+	private CanonicalState(int pieces[], int ops[], int goal, boolean opsReusable, Bounds bounds){
+		this.pieces = pieces;
+		this.ops = ops;
+		this.goal = goal;
+		this.opsReusable = opsReusable;
+		this.bounds = bounds;
+
+		int h = Arrays.hashCode(pieces);
+		h = 31*h + Arrays.hashCode(ops);
+		h = 31*h + goal;
+		h = 31*h + (opsReusable ? 1 : 0);
+		h = 31*h + bounds.hashCode();
+		this.hash = h;
+	}
+
+	public static CanonicalState of(GameState gs){
+		return of(gs.getPieces(), gs.getNumPieces(), gs.getOps(), gs.getNumOps(), gs.getGoal(), gs.isOpsReusable(),
+				gs.getBounds());
+	}
+
+	/**
+	 * Builds the canonical state of the first numPieces values in pieces, with the given operations and goal,
+	 * within the default bounds.
+	 */
+	public static CanonicalState of(int pieces[], int numPieces, Operation ops[], int numOps, int goal, boolean opsReusable){
+		return of(pieces, numPieces, ops, numOps, goal, opsReusable, Bounds.DEFAULT);
+	}
+
+	/**
+	 * Builds the canonical state of the first numPieces values in pieces, with the given operations, goal and bounds.
+	 */
+	public static CanonicalState of(int pieces[], int numPieces, Operation ops[], int numOps, int goal, boolean opsReusable,
+			Bounds bounds){
+		int sortedPieces[] = Arrays.copyOf(pieces, numPieces);
+		Arrays.sort(sortedPieces);
+		int opCodes[] = new int[numOps];
+		for(int k=0; k<numOps; k++)
+			opCodes[k] = ops[k].kind;
+		Arrays.sort(opCodes);
+		return new CanonicalState(sortedPieces, opCodes, goal, opsReusable, bounds);
+	}
+
+	@Override
+	public int hashCode(){
+		return hash;
+	}
+
+	@Override
+	public boolean equals(Object o){
+		if(this == o)
+			return true;
+		if(!(o instanceof CanonicalState))
+			return false;
+		CanonicalState other = (CanonicalState) o;
+		return hash == other.hash && goal == other.goal && opsReusable == other.opsReusable
+				&& Arrays.equals(pieces, other.pieces) && Arrays.equals(ops, other.ops) && bounds.equals(other.bounds);
+	}
+
+	public String toString(){
+		return "Goal: " + goal + " Operands: " + Arrays.toString(pieces) + " Operators: " + Arrays.toString(ops);
+	}
+}
@@ -0,0 +1,27 @@
+package solver;
+
+import back_end.Operation;
+
+/**
+ * Prices a single combine, for solvers that look for the cheapest solution rather than the first one found.
+ * The cost of a solution is the sum of the costs of its moves.
+ *
+ * @author Kelton Finch
+ */
+public interface CostModel {
+
+	/**
+	 * @param op The operation being applied.
+	 * @param first The first operand.
+	 * @param second The second operand.
+	 * @param result The (legal) result of the combine.
+	 * @return The cost of the move. Must be at least minimumCost().
+	 */
+	int cost(Operation op, int first, int second, int result);
+
+	/**
+	 * @return A lower bound on the cost of any move. Solvers use it to bound the cost of the moves still to be made,
+	 * 		   so it must never be larger than a cost that cost() can return.
+	 */
+	int minimumCost();
+}
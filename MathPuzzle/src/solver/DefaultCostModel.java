@@ -0,0 +1,76 @@
+package solver;
+
+import back_end.Operation;
+
+/**
+ * Cost model that prefers the operations a player reaches for first, and small intermediate results.
+ * A move costs a base price for its operation, plus a price for each digit of the result past the first.
+ *
+ * @author Kelton Finch
+ */
+public class DefaultCostModel implements CostModel {
+
+	//base price of each operation, indexed by op code
+	private static final int DEFAULT_OP_COSTS[] = {
+		2, //PLUS
+		2, //MINUS
+		3, //TIMES
+		4, //DIVIDE
+		6, //EXPONENT
+		6, //ROOT
+		5, //MODULO
+	};
+	private static final int DEFAULT_CUSTOM_COST = 6;
+	private static final int DEFAULT_DIGIT_COST = 1;
+
+	private final int opCosts[];
+	private final int customCost;
+	private final int digitCost;
+	private final int minimumCost;
+
+	public DefaultCostModel(){
+		this(DEFAULT_OP_COSTS, DEFAULT_CUSTOM_COST, DEFAULT_DIGIT_COST);
+	}
+
+	/**
+	 * @param opCosts Base price of each built-in operation, indexed by op code. Must not be negative.
+	 * @param customCost Base price of custom operations. Must not be negative.
+	 * @param digitCost Price of each digit of a result past the first. Must not be negative.
+	 */
+	public DefaultCostModel(int opCosts[], int customCost, int digitCost){
+		if(opCosts.length <= Operation.MODULO)
+			throw new IllegalArgumentException("Need a cost for every built-in operation");
+		this.opCosts = opCosts.clone();
+		this.customCost = customCost;
+		this.digitCost = digitCost;
+
+		int min = customCost;
+		for(int c : this.opCosts){
+			if(c < 0)
+				throw new IllegalArgumentException("Costs must not be negative");
+			min = Math.min(min, c);
+		}
+		if(min < 0 || digitCost < 0)
+			throw new IllegalArgumentException("Costs must not be negative");
+		this.minimumCost = min;
+	}
+
+	@Override
+	public int cost(Operation op, int first, int second, int result){
+		int base = op.opCode >= 0 && op.opCode < opCosts.length ? opCosts[op.opCode] : customCost;
+		return base + digitCost * extraDigits(result);
+	}
+
+	//digits of value past the first, for any size of value the bounds allow
+	private static int extraDigits(int value){
+		int extra = 0;
+		for(long magnitude = Math.abs((long) value); magnitude >= 10; magnitude /= 10)
+			extra++;
+		return extra;
+	}
+
+	@Override
+	public int minimumCost(){
+		return minimumCost;
+	}
+}
@@ -0,0 +1,320 @@
+package solver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import back_end.Bounds;
+import back_end.GameState;
+import back_end.Operation;
+
+/**
+ * Depth-first search core that allocates nothing per node.
+ *
+ * The pieces at each depth live in their own preallocated int buffer, kept in ascending order: a move copies the
+ * remaining pieces into the next depth's buffer with the result inserted in order, so there's nothing to undo.
+ * Which operations are still available is kept as a count of each kind (see OpCounts), and the current line is kept in
+ * per-depth int arrays, so only a successful search allocates anything (when the line is read back as Steps).
+ *
+ * Each distinct child position is generated once per node, as far as cheaply possible: pairs of pieces are tried once
+ * per pair of values (equal pieces are adjacent in the sorted buffer, so repeats are skipped), operand order is only
+ * swapped for ops that aren't commutative and only when the operands differ, each kind of op is tried once however
+ * many copies are left, and with reusable ops a result already tried for the same pair isn't tried again. When ops get
+ * used up, positions are only bounded by the kinds still left, so spending the only TIMES or EXPONENT prunes harder.
+ *
+ * @author Kelton Finch
+ */
+class InPlaceSearch {
+
+	private static final long CHECK_MASK = (1 << 16) - 1; //the checkpoint is called every 2^16 nodes
+
+	/**
+	 * Called periodically during a search, to report progress and allow it to be stopped.
+	 */
+	interface Checkpoint {
+		/**
+		 * @param nodes Nodes searched so far.
+		 * @param depth Moves made along the line currently being searched.
+		 * @return False to abandon the search.
+		 */
+		boolean keepGoing(long nodes, int depth);
+	}
+
+	private final int pieces[][]; //pieces[d] holds the numPieces-d pieces left at depth d, in ascending order
+	private final OpCounts counts;
+	private final Operation ops[]; //one of each kind
+	private final boolean commutative[];
+	private final int growth[]; //each kind's MagnitudeBound growth set
+	private int opsAvailable; //the count of each kind left, as an OpCounts mask
+	private int growthLeft; //the growth set of the kinds left
+	private final boolean opsReusable;
+	private final int goal;
+	private final long goalMagnitude;
+	private final Bounds bounds;
+	private final MagnitudeBound bound; //for giving up on positions that can't reach the goal any more
+
+	//results already tried for the current pair at each depth (reusable ops only)
+	private final int triedResults[][];
+
+	//the move made at each depth of the current line
+	private final int lineFirst[];
+	private final int lineSecond[];
+	private final int lineOp[];
+	private int lineLength;
+
+	private long nodes;
+	private int firstMovesStarted;
+	private Checkpoint checkpoint; //may be null
+	private SolveStats stats; //may be null
+	private boolean abandoned;
+
+	InPlaceSearch(GameState gs){
+		this(gs, new MagnitudeBound());
+	}
+
+	/**
+	 * @param bound Retargeted at gs and used for this search, so a solver can keep one (and its cache) between searches.
+	 */
+	InPlaceSearch(GameState gs, MagnitudeBound bound){
+		int numPieces = gs.getNumPieces();
+		pieces = new int[Math.max(numPieces, 1)][];
+		for(int d=0; d<pieces.length; d++)
+			pieces[d] = new int[numPieces-d];
+		for(int i=0; i<numPieces; i++)
+			pieces[0][i] = gs.pieceAt(i);
+		Arrays.sort(pieces[0]);
+
+		counts = new OpCounts(gs);
+		ops = counts.kinds;
+		commutative = new boolean[ops.length];
+		growth = new int[ops.length];
+		for(int k=0; k<ops.length; k++){
+			commutative[k] = ops[k].isCommutative;
+			growth[k] = MagnitudeBound.growthOf(ops[k]);
+		}
+		opsAvailable = counts.all;
+		growthLeft = growthOf(opsAvailable);
+		opsReusable = gs.isOpsReusable();
+		goal = gs.getGoal();
+		goalMagnitude = Math.abs((long) goal);
+		bounds = gs.getBounds();
+		this.bound = bound;
+		bound.reset(ops, ops.length, bounds);
+
+		lineFirst = new int[Math.max(numPieces-1, 0)];
+		lineSecond = new int[lineFirst.length];
+		lineOp = new int[lineFirst.length];
+		triedResults = new int[lineFirst.length][2*ops.length];
+	}
+
+	/**
+	 * Runs the search.
+	 * @return true if a winning line was found, in which case it can be read with line().
+	 */
+	boolean run(){
+		return search(0);
+	}
+
+	/**
+	 * Runs the search, calling checkpoint every so often.
+	 * @return true if a winning line was found, false if there is none or the checkpoint abandoned the search.
+	 */
+	boolean run(Checkpoint checkpoint){
+		this.checkpoint = checkpoint;
+		return search(0);
+	}
+
+	/**
+	 * Makes later runs count their nodes and illegal moves into stats.
+	 * @param stats The statistics to add to, or null to count nothing.
+	 */
+	void setStats(SolveStats stats){
+		this.stats = stats;
+	}
+
+	/**
+	 * @return True if the last run was stopped by its checkpoint before it finished.
+	 */
+	boolean wasAbandoned(){
+		return abandoned;
+	}
+
+	/**
+	 * @return How many of firstMoves() the last run started on. If it was abandoned, every one but the last was
+	 * 		   searched to the end.
+	 */
+	int getFirstMovesStarted(){
+		return firstMovesStarted;
+	}
+
+	/**
+	 * Lists the moves from the starting position in the order run tries them, so a caller can hand out the ones an
+	 * abandoned run didn't get to. Mirrors the loop in search.
+	 */
+	List<Step> firstMoves(){
+		List<Step> result = new ArrayList<Step>();
+		int current[] = pieces[0];
+		int n = current.length;
+		for(int i=0; i<n; i++){
+			if(i > 0 && current[i] == current[i-1])
+				continue;
+			for(int j=i+1; j<n; j++){
+				if(j > i+1 && current[j] == current[j-1])
+					continue;
+				int first = current[i];
+				int second = current[j];
+				int tried = 0;
+				for(int k=0; k<ops.length; k++){
+					int value = ops[k].evaluate(first, second, bounds);
+					if(isNew(0, tried, k, value)){
+						triedResults[0][tried++] = value;
+						result.add(new Step(first, second, ops[k]));
+					}
+					if(!commutative[k] && first != second){
+						value = ops[k].evaluate(second, first, bounds);
+						if(isNew(0, tried, k, value)){
+							triedResults[0][tried++] = value;
+							result.add(new Step(second, first, ops[k]));
+						}
+					}
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return The winning line found by the last successful run.
+	 */
+	List<Step> line(){
+		List<Step> result = new ArrayList<Step>(lineLength);
+		for(int d=0; d<lineLength; d++)
+			result.add(new Step(lineFirst[d], lineSecond[d], ops[lineOp[d]]));
+		return result;
+	}
+
+	long getNodes(){
+		return nodes;
+	}
+
+	private boolean search(int depth){
+		nodes++;
+		if((nodes & CHECK_MASK) == 0 && checkpoint != null && !checkpoint.keepGoing(nodes, depth))
+			abandoned = true;
+		if(abandoned)
+			return false;
+		if(stats != null)
+			stats.countNode(depth);
+		int current[] = pieces[depth];
+		int n = current.length;
+		if(n == 1){
+			if(current[0] != goal)
+				return false;
+			lineLength = depth;
+			return true;
+		}
+		if(!bound.canReach(current, n, growthLeft, goalMagnitude)) //the goal is out of reach from here
+			return false;
+
+		for(int i=0; i<n; i++){
+			if(i > 0 && current[i] == current[i-1]) //same first value as the last pair
+				continue;
+			for(int j=i+1; j<n; j++){
+				if(j > i+1 && current[j] == current[j-1]) //same second value as the last pair
+					continue;
+				int first = current[i];
+				int second = current[j];
+				int tried = 0;
+				for(int k=0; k<ops.length; k++){
+					if(!counts.has(opsAvailable, k))
+						continue;
+					int result = ops[k].evaluate(first, second, bounds);
+					if(isNew(depth, tried, k, result)){
+						triedResults[depth][tried++] = result;
+						if(tryMove(depth, i, j, k, first, second, result))
+							return true;
+					}
+					if(!commutative[k] && first != second){
+						result = ops[k].evaluate(second, first, bounds);
+						if(isNew(depth, tried, k, result)){
+							triedResults[depth][tried++] = result;
+							if(tryMove(depth, i, j, k, second, first, result))
+								return true;
+						}
+					}
+					if(abandoned)
+						return false;
+				}
+			}
+		}
+		return false;
+	}
+
+	//the MagnitudeBound growth set of the kinds left in available
+	private int growthOf(int available){
+		int result = 0;
+		for(int k=0; k<ops.length; k++){
+			if(counts.has(available, k))
+				result |= growth[k];
+		}
+		return result;
+	}
+
+	/*
+	 * Returns false if result is illegal, or (with reusable ops) was already tried for the current pair:
+	 * the position after it would be the same.
+	 */
+	private boolean isNew(int depth, int tried, int k, int result){
+		if(!Operation.isValid(result)){
+			if(stats != null)
+				stats.countIllegal(ops[k], result);
+			return false;
+		}
+		if(!opsReusable)
+			return true;
+		int results[] = triedResults[depth];
+		for(int t=0; t<tried; t++){
+			if(results[t] == result)
+				return false;
+		}
+		return true;
+	}
+
+	/*
+	 * Makes the move combining the pieces in slots i and j (i < j) into result, and searches the resulting position.
+	 */
+	private boolean tryMove(int depth, int i, int j, int k, int first, int second, int result){
+		int current[] = pieces[depth];
+		int next[] = pieces[depth+1];
+		int size = 0;
+		boolean placed = false;
+		for(int s=0; s<current.length; s++){
+			if(s == i || s == j)
+				continue;
+			if(!placed && result <= current[s]){
+				next[size++] = result;
+				placed = true;
+			}
+			next[size++] = current[s];
+		}
+		if(!placed)
+			next[size] = result;
+
+		int opsBefore = opsAvailable;
+		int growthBefore = growthLeft;
+		opsAvailable = counts.use(opsAvailable, k);
+		if(!counts.has(opsAvailable, k)) //the last of its kind
+			growthLeft = growthOf(opsAvailable);
+		lineFirst[depth] = first;
+		lineSecond[depth] = second;
+		lineOp[depth] = k;
+		if(depth == 0)
+			firstMovesStarted++;
+
+		boolean found = search(depth+1);
+
+		opsAvailable = opsBefore;
+		growthLeft = growthBefore;
+		return found;
+	}
+}
@@ -0,0 +1,224 @@
+package solver;
+
+import back_end.Bounds;
+import back_end.Operation;
+
+/**
+ * Upper bounds on how large (in absolute value) a value any multiset of pieces can be combined into, so a search can
+ * give up on positions that can no longer reach the goal.
+ *
+ * Every built-in operation keeps |a op b| within max(|a|+|b|, |a|*|b|, |a|^|b|, |b|^|a|, 1), and nothing can get
+ * larger than the puzzle's bounds allow, so the bound for a multiset is the best of that over every way of splitting it
+ * in two, using the bounds of the two halves. Bounds are cached by packed multiset, so each multiset is only split
+ * once per cache. Only the kinds of operation the puzzle has are counted (no multiplication bound without TIMES, and
+ * so on). Custom operations can do anything, so a puzzle with one isn't bounded at all. Searches whose operations get
+ * used up can ask for the bound with only the kinds they have left (see growthOf), which is cached separately.
+ *
+ * Puzzles too big to pack (see PackedState.fits) would need every split of every multiset, so they get a looser bound
+ * instead: without EXPONENT, the product of max(|piece|, 2) over the pieces, since |a|+|b| and |a|*|b| are both at most
+ * max(|a|, 2) * max(|b|, 2). With EXPONENT they aren't bounded.
+ *
+ * A bound depends only on the multiset, the growth set and the largest magnitude allowed, so one MagnitudeBound can be
+ * retargeted at puzzle after puzzle (see reset) and keeps its cache while that magnitude stays the same. The cache and
+ * the scratch space for splitting are only allocated once a multiset of three or more pieces needs them, and canReach
+ * doesn't look anything up when the sum or product of the pieces already gets there.
+ *
+ * Not thread safe.
+ *
+ * @author Kelton Finch
+ */
+class MagnitudeBound {
+
+	private static final int MAX_CACHE_SIZE = 1 << 20; //the cache starts over past this many multisets
+	private static final int UNKNOWN = -1;
+
+	//how operations can grow magnitudes, as bits of a growth set
+	static final int ADDS = 1; //PLUS or MINUS
+	static final int MULTIPLIES = 2; //TIMES
+	static final int POWERS = 4; //EXPONENT
+	static final int UNBOUNDED = 8; //custom operations
+
+	private int growth; //every way the puzzle's operations can grow magnitudes
+	private int limit; //the largest magnitude the puzzle allows
+	private boolean splits; //whether multisets can be packed, for the tighter bound
+	private StateTable cache; //packed multiset and growth set -> bound, or null until it's first needed
+
+	//scratch space for the two halves of a multiset of each size, or null until first needed
+	private int firstHalves[][];
+	private int secondHalves[][];
+
+	/**
+	 * Creates a bound with no puzzle yet, for reset to target.
+	 */
+	MagnitudeBound(){
+
+	}
+
+	MagnitudeBound(Operation ops[], int numOps, Bounds bounds){
+		reset(ops, numOps, bounds);
+	}
+
+	/**
+	 * Retargets the bound at a puzzle with the given operations and bounds. Cached bounds are kept if the puzzle allows
+	 * the same largest magnitude as the last one.
+	 */
+	void reset(Operation ops[], int numOps, Bounds bounds){
+		int growth = 0;
+		for(int k=0; k<numOps; k++)
+			growth |= growthOf(ops[k]);
+		this.growth = growth;
+		int limit = bounds.maxMagnitude();
+		if(limit != this.limit && cache != null)
+			cache.clear();
+		this.limit = limit;
+		this.splits = PackedState.fits(bounds);
+	}
+
+	/**
+	 * @return The growth set of a puzzle with only op, to be or'd together for the operations a search has left.
+	 */
+	static int growthOf(Operation op){
+		switch(op.opCode){
+		case Operation.PLUS:
+		case Operation.MINUS:
+			return ADDS;
+		case Operation.TIMES:
+			return MULTIPLIES;
+		case Operation.EXPONENT:
+			return POWERS;
+		case Operation.DIVIDE:
+		case Operation.ROOT:
+		case Operation.MODULO:
+			return 0; //never more than the larger operand (or 1)
+		default:
+			return UNBOUNDED;
+		}
+	}
+
+	/**
+	 * @param growth The growth set of the operations left, which must be some of the puzzle's.
+	 * @return False if the pieces certainly can't be combined into anything as large (in absolute value) as magnitude.
+	 */
+	boolean canReach(int sortedPieces[], int numPieces, int growth, long magnitude){
+		return easilyReached(sortedPieces, numPieces, growth) >= magnitude
+				|| maxMagnitude(sortedPieces, numPieces, growth) >= magnitude;
+	}
+
+	/*
+	 * Something maxMagnitude never goes below, without a lookup: the largest piece, or the sum or product of all of them
+	 * if the operations can add or multiply (|a op b| can be |a|+|b| or |a|*|b|, and bounds only grow with their halves).
+	 */
+	private long easilyReached(int sortedPieces[], int numPieces, int growth){
+		if((growth & UNBOUNDED) != 0)
+			return limit;
+		long largest = 0;
+		long sum = 0;
+		long product = 1;
+		for(int i=0; i<numPieces; i++){
+			long piece = Math.abs((long) sortedPieces[i]);
+			largest = Math.max(largest, piece);
+			sum += piece;
+			product = Math.min(product * piece, limit); //piece is at most limit, so this can't overflow
+		}
+		long most = largest;
+		if((growth & ADDS) != 0)
+			most = Math.max(most, sum);
+		if((growth & MULTIPLIES) != 0)
+			most = Math.max(most, product);
+		return Math.min(most, limit);
+	}
+
+	/**
+	 * @param sortedPieces The pieces, in ascending order. Not changed.
+	 * @param numPieces How many of sortedPieces to bound. At least one.
+	 * @return The most (in absolute value) the pieces could be combined into.
+	 */
+	int maxMagnitude(int sortedPieces[], int numPieces){
+		return maxMagnitude(sortedPieces, numPieces, growth);
+	}
+
+	/**
+	 * @param growth The growth set of the operations left, which must be some of the puzzle's.
+	 * @return The most (in absolute value) the pieces could be combined into with only those operations.
+	 */
+	int maxMagnitude(int sortedPieces[], int numPieces, int growth){
+		if(numPieces == 1)
+			return Math.abs(sortedPieces[0]);
+		if((growth & UNBOUNDED) != 0)
+			return limit;
+		if(numPieces == 2) //cheaper than a lookup
+			return combine(Math.abs(sortedPieces[0]), Math.abs(sortedPieces[1]), growth);
+		if(!splits)
+			return (growth & POWERS) != 0 ? limit : product(sortedPieces, numPieces);
+
+		if(cache == null){
+			cache = new StateTable();
+			firstHalves = new int[Bounds.PIECES_LIMIT + 1][];
+			secondHalves = new int[Bounds.PIECES_LIMIT + 1][];
+		}
+		long high = PackedState.high(sortedPieces, numPieces, growth);
+		long low = PackedState.low(sortedPieces, numPieces, growth);
+		int cached = cache.get(high, low, UNKNOWN);
+		if(cached != UNKNOWN)
+			return cached;
+
+		//split into every pair of halves where the first piece is in the first half, keeping both halves sorted.
+		//The halves are smaller, so bounding them only uses the scratch space of smaller sizes.
+		if(firstHalves[numPieces] == null){
+			firstHalves[numPieces] = new int[numPieces];
+			secondHalves[numPieces] = new int[numPieces];
+		}
+		int first[] = firstHalves[numPieces];
+		int second[] = secondHalves[numPieces];
+		int best = 0;
+		for(int split=0; split < 1 << (numPieces-1) && best < limit; split++){
+			int sizeFirst = 0;
+			int sizeSecond = 0;
+			first[sizeFirst++] = sortedPieces[0];
+			for(int i=1; i<numPieces; i++){
+				if((split & (1 << (i-1))) != 0)
+					first[sizeFirst++] = sortedPieces[i];
+				else
+					second[sizeSecond++] = sortedPieces[i];
+			}
+			if(sizeSecond == 0)
+				continue;
+			best = Math.max(best, combine(maxMagnitude(first, sizeFirst, growth), maxMagnitude(second, sizeSecond, growth), growth));
+		}
+
+		if(cache.size() >= MAX_CACHE_SIZE)
+			cache.clear();
+		cache.put(high, low, best);
+		return best;
+	}
+
+	//the most a single operation could make of operands no larger than x and y
+	private int combine(int x, int y, int growth){
+		long most = Math.max(Math.max(x, y), 1);
+		if((growth & ADDS) != 0)
+			most = Math.max(most, (long) x + y);
+		if((growth & MULTIPLIES) != 0)
+			most = Math.max(most, (long) x * y);
+		if((growth & POWERS) != 0)
+			most = Math.max(most, Math.max(power(x, y), power(y, x)));
+		return (int) Math.min(most, limit);
+	}
+
+	//the loose bound for puzzles that can't be packed, without EXPONENT
+	private int product(int pieces[], int numPieces){
+		long most = 1;
+		for(int i=0; i<numPieces && most <= limit; i++)
+			most *= Math.max(Math.abs(pieces[i]), 2);
+		return (int) Math.min(most, limit);
+	}
+
+	//base^exponent, or anything past limit if it's larger
+	private long power(long base, int exponent){
+		if(base <= 1)
+			return exponent == 0 ? 1 : base;
+		long result = 1;
+		for(int e=0; e<exponent && result <= limit; e++)
+			result *= base;
+		return result;
+	}
+}
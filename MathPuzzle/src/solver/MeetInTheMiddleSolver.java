@@ -0,0 +1,430 @@
+package solver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Stack;
+import java.util.concurrent.CancellationException;
+
+import back_end.GameState;
+import back_end.Move;
+import back_end.Operation;
+
+/**
+ * Solver for large puzzles (9 or 10 pieces) that meets in the middle instead of searching move by move.
+ *
+ * The last move of any solution combines the values of two disjoint groups of pieces. Every value reachable from each
+ * group of at most half the pieces is worked out up front, the same way ReachabilitySolver does, along with a witness
+ * move for each value. A larger group reaches a target when some split of it into a small half and the rest does:
+ * for each value of the small half and each operation, the value the rest would have to reach is worked out by
+ * inverting the operation, and the rest is checked the same way, recursing on its own splits until it's small enough
+ * to look up. Answers for large groups are cached per multiset and target, and groups that can't get as large as
+ * their target are skipped (see MagnitudeBound).
+ * Only supports game states with reusable operations, at most GameState.MAX_PIECES pieces and the default piece range:
+ * the tables are sized for them.
+ *
+ * @author Kelton Finch
+ */
+public class MeetInTheMiddleSolver {
+
+	public static final int MIN_PIECES = 9; //suits reusable puzzles with at least this many pieces
+
+	private static final int OFFSET = -Operation.MIN_PIECE_SIZE; //bit index of a value is value + OFFSET
+	private static final int NUM_VALUES = Operation.MAX_PIECE_SIZE - Operation.MIN_PIECE_SIZE + 1;
+	private static final int VALUE_BITS = 11; //enough for value + OFFSET
+
+	private static final byte UNKNOWN = 0;
+	private static final byte REACHABLE = 1;
+	private static final byte UNREACHABLE = 2;
+
+	private static final int MAX_SQUARE_ROOT = 31; //31^2 is the largest square that's a legal piece
+	private static final int MAX_POWER_OF_TWO = 9; //2^9 is the largest power of two that's a legal piece
+	private static final long CHECK_MASK = (1 << 10) - 1; //the checkpoint is called every 2^10 large groups joined
+
+	public MeetInTheMiddleSolver(){
+
+	}
+
+	/**
+	 * @return True if gs is big enough that this solver beats searching it, and this solver supports it.
+	 */
+	public static boolean suits(GameState gs){
+		return gs.getNumPieces() >= MIN_PIECES && supports(gs);
+	}
+
+	private static boolean supports(GameState gs){
+		return gs.isOpsReusable() && gs.getNumPieces() <= GameState.MAX_PIECES && gs.getBounds().hasDefaultPieceSizes();
+	}
+
+	/**
+	 * Finds a solution for the given game state, with the same contract as PuzzleSolver.solve.
+	 * @param gs The game state to be solved for. Its operations must be reusable, and its bounds the default ones
+	 * 		  (apart from how many pieces and operations it can have).
+	 * @return A solution as a stack of moves (first move on top), or null if the game state has no solution.
+	 */
+	public Stack<Move> solve(GameState gs){
+		return solve(gs, null);
+	}
+
+	/*
+	 * Solves gs like solve(gs), calling checkpoint every so often (always with depth 0).
+	 * Throws CancellationException if the checkpoint abandons the solve.
+	 */
+	Stack<Move> solve(GameState gs, InPlaceSearch.Checkpoint checkpoint){
+		Search search = new Search(gs, checkpoint);
+		int all = (1 << gs.getNumPieces()) - 1;
+		if(!search.reaches(all, gs.getGoal()))
+			return null;
+		List<Step> steps = new ArrayList<Step>();
+		search.explain(all, gs.getGoal(), steps);
+		return Step.toMoves(gs, steps);
+	}
+
+	/*
+	 * Solves gs for every goal from minGoal to maxGoal (exclusive), as solve would for each, but working out the
+	 * values of its small groups once for all of them. Entry goal - minGoal is the solution for that goal, or null.
+	 */
+	List<Stack<Move>> solveGoals(GameState gs, int minGoal, int maxGoal){
+		Search search = new Search(gs, null);
+		int all = (1 << gs.getNumPieces()) - 1;
+		List<Stack<Move>> result = new ArrayList<Stack<Move>>(maxGoal - minGoal);
+		for(int goal=minGoal; goal<maxGoal; goal++){
+			if(!search.reaches(all, goal)){
+				result.add(null);
+				continue;
+			}
+			List<Step> steps = new ArrayList<Step>();
+			search.explain(all, goal, steps);
+			result.add(Step.toMoves(gs, steps));
+		}
+		return result;
+	}
+
+	/**
+	 * @param gs The game state to be checked. See solve for which game states are supported.
+	 * @return True if the game state has a solution.
+	 */
+	public boolean isSolvable(GameState gs){
+		return new Search(gs, null).reaches((1 << gs.getNumPieces()) - 1, gs.getGoal());
+	}
+
+	/*
+	 * Everything worked out for one game state. Groups of pieces are bitmasks over indices into the sorted pieces.
+	 */
+	private static class Search {
+
+		private final int pieces[]; //in ascending order
+		private final Operation ops[];
+		private final int half; //groups of up to this many pieces have their values worked out up front
+		private final int canonical[]; //each group -> the lowest group holding the same multiset of values
+		private final int equalBefore[]; //each index -> the lower indices holding the same value
+
+		private final BitSet reach[]; //values reachable from each small group
+		private final int witness[][]; //last move reaching each value of each small canonical group, or 0 for a leaf
+		private final byte known[]; //canonical large group * NUM_VALUES + target + OFFSET -> whether it's reachable
+
+		private final MagnitudeBound bound;
+		private final int groupPieces[][]; //scratch space for the pieces of a group, by group size
+		private final int candidates[][]; //scratch space for inverting operations, by group size
+
+		private final InPlaceSearch.Checkpoint checkpoint; //may be null
+		private long work; //large groups joined, for calling the checkpoint
+
+		Search(GameState gs, InPlaceSearch.Checkpoint checkpoint){
+			if(!supports(gs))
+				throw new IllegalArgumentException("MeetInTheMiddleSolver requires reusable operations, at most "
+						+ GameState.MAX_PIECES + " pieces and the default piece range");
+
+			this.checkpoint = checkpoint;
+			int n = gs.getNumPieces();
+			pieces = new int[n];
+			for(int i=0; i<n; i++)
+				pieces[i] = gs.pieceAt(i);
+			Arrays.sort(pieces);
+			ops = Arrays.copyOf(gs.getOps(), gs.getNumOps());
+			half = (n + 1) / 2;
+
+			equalBefore = new int[n];
+			for(int i=1; i<n; i++){
+				if(pieces[i] == pieces[i-1])
+					equalBefore[i] = equalBefore[i-1] | 1 << (i-1);
+			}
+			//equal values are adjacent, so each group's multiset is held by the group taking the lowest index of each run
+			canonical = new int[1 << n];
+			for(int mask=1; mask<canonical.length; mask++){
+				int canon = 0;
+				for(int i=0; i<n; i++){
+					if((mask & (1 << i)) != 0){
+						int lowest = Integer.numberOfTrailingZeros(equalBefore[i] | 1 << i);
+						while((canon & (1 << lowest)) != 0)
+							lowest++;
+						canon |= 1 << lowest;
+					}
+				}
+				canonical[mask] = canon;
+			}
+
+			reach = new BitSet[1 << n];
+			witness = new int[1 << n][];
+			for(int mask=1; mask<reach.length; mask++){
+				if(Integer.bitCount(mask) > half)
+					continue;
+				if(checkpoint != null && !checkpoint.keepGoing(mask, 0)) //each group's values can take a while
+					throw new CancellationException("Search abandoned");
+				int canon = canonical[mask];
+				if(canon != mask){ //canon is numerically lower, so it's already done
+					reach[mask] = reach[canon];
+					continue;
+				}
+				BitSet bits = new BitSet(NUM_VALUES);
+				int moves[] = new int[NUM_VALUES];
+				if(Integer.bitCount(mask) == 1)
+					bits.set(pieces[Integer.numberOfTrailingZeros(mask)] + OFFSET);
+				else{
+					for(int s=(mask-1) & mask; s>0; s=(s-1) & mask){
+						int t = mask ^ s;
+						for(int k=0; k<ops.length; k++){
+							if(ops[k].isCommutative && s > t) //other operand order covers it
+								continue;
+							combineInto(bits, moves, reach[s], reach[t], k);
+						}
+					}
+				}
+				reach[mask] = bits;
+				witness[mask] = moves;
+			}
+
+			known = new byte[n > half ? (1 << n) * NUM_VALUES : 0];
+			bound = new MagnitudeBound(ops, ops.length, gs.getBounds());
+			groupPieces = new int[n+1][];
+			candidates = new int[n+1][];
+			for(int size=0; size<=n; size++){
+				groupPieces[size] = new int[size];
+				candidates[size] = new int[NUM_VALUES];
+			}
+		}
+
+		private void combineInto(BitSet result, int moves[], BitSet firstValues, BitSet secondValues, int k){
+			for(int a=firstValues.nextSetBit(0); a>=0; a=firstValues.nextSetBit(a+1)){
+				for(int b=secondValues.nextSetBit(0); b>=0; b=secondValues.nextSetBit(b+1)){
+					int value = ops[k].evaluate(a - OFFSET, b - OFFSET);
+					if(Operation.isValid(value) && !result.get(value + OFFSET)){
+						result.set(value + OFFSET);
+						moves[value + OFFSET] = (k + 1) << (2 * VALUE_BITS) | a << VALUE_BITS | b;
+					}
+				}
+			}
+		}
+
+		/*
+		 * Returns true if the pieces in mask can be combined into target.
+		 */
+		boolean reaches(int mask, int target){
+			if(target < Operation.MIN_PIECE_SIZE || target > Operation.MAX_PIECE_SIZE)
+				return false;
+			if(Integer.bitCount(mask) <= half)
+				return reach[mask].get(target + OFFSET);
+			int index = canonical[mask] * NUM_VALUES + target + OFFSET;
+			if(known[index] == UNKNOWN)
+				known[index] = join(canonical[mask], target, null) ? REACHABLE : UNREACHABLE;
+			return known[index] == REACHABLE;
+		}
+
+		/*
+		 * Appends steps that combine the pieces in mask into target. target must be reachable from mask.
+		 */
+		void explain(int mask, int target, List<Step> steps){
+			if(Integer.bitCount(mask) == 1)
+				return;
+			if(Integer.bitCount(mask) > half){
+				join(mask, target, steps);
+				return;
+			}
+			int move = witness[canonical[mask]][target + OFFSET];
+			Operation op = ops[(move >>> (2 * VALUE_BITS)) - 1];
+			int first = (move >>> VALUE_BITS & ((1 << VALUE_BITS) - 1)) - OFFSET;
+			int second = (move & ((1 << VALUE_BITS) - 1)) - OFFSET;
+			//the witness is for the canonical group: find the same split among this group's pieces
+			for(int s=(mask-1) & mask; s>0; s=(s-1) & mask){
+				if(reach[s].get(first + OFFSET) && reach[mask ^ s].get(second + OFFSET)){
+					explain(s, first, steps);
+					explain(mask ^ s, second, steps);
+					steps.add(new Step(first, second, op));
+					return;
+				}
+			}
+		}
+
+		/*
+		 * Looks for a split of the large group mask into a small half and the rest, whose values combine into target.
+		 * If steps isn't null, the steps reaching target are appended to it when one is found.
+		 */
+		private boolean join(int mask, int target, List<Step> steps){
+			checkIn();
+			int size = Integer.bitCount(mask);
+			if(bound.maxMagnitude(piecesOf(mask), size) < Math.abs(target)) //the target is out of reach
+				return false;
+			int found[] = candidates[size];
+
+			for(int small=(mask-1) & mask; small>0; small=(small-1) & mask){
+				int rest = mask ^ small;
+				int smallSize = Integer.bitCount(small);
+				if(smallSize > size - smallSize || (smallSize == size - smallSize && small > rest))
+					continue; //the same split with the halves the other way round
+				if(!lowestOfEqual(mask, small))
+					continue; //the same multisets as another split
+				int restBound = bound.maxMagnitude(piecesOf(rest), size - smallSize);
+
+				BitSet values = reach[small];
+				for(int b=values.nextSetBit(0); b>=0; b=values.nextSetBit(b+1)){
+					int value = b - OFFSET;
+					for(int k=0; k<ops.length; k++){
+						for(int order=0; order<2; order++){
+							boolean valueFirst = order == 1;
+							if(valueFirst && ops[k].isCommutative)
+								continue;
+							int count = invert(ops[k], value, valueFirst, target, restBound, found);
+							for(int c=0; c<count; c++){
+								int other = found[c];
+								int result = valueFirst ? ops[k].evaluate(value, other) : ops[k].evaluate(other, value);
+								if(result != target || !reaches(rest, other))
+									continue;
+								if(steps != null){
+									explain(rest, other, steps);
+									explain(small, value, steps);
+									steps.add(valueFirst ? new Step(value, other, ops[k]) : new Step(other, value, ops[k]));
+								}
+								return true;
+							}
+						}
+					}
+				}
+			}
+			return false;
+		}
+
+		private void checkIn(){
+			if((++work & CHECK_MASK) == 0 && checkpoint != null && !checkpoint.keepGoing(work, 0))
+				throw new CancellationException("Search abandoned");
+		}
+
+		/*
+		 * Fills found with every operand x (within magnitude limit) that could make op give target with value: x op value
+		 * if valueFirst is false, value op x if it's true. Some candidates may not work, so callers check each one.
+		 * Returns the number of candidates.
+		 */
+		private static int invert(Operation op, int value, boolean valueFirst, int target, int limit, int found[]){
+			switch(op.opCode){
+			case Operation.PLUS:
+				return single(target - value, found);
+			case Operation.MINUS:
+				return single(valueFirst ? value - target : target + value, found);
+			case Operation.TIMES:
+				if(value == 0)
+					return target == 0 ? range(-limit, limit, found) : 0;
+				return target % value == 0 ? single(target / value, found) : 0;
+			case Operation.DIVIDE:
+				if(!valueFirst) //x / value
+					return value == 0 ? 0 : single(target * value, found);
+				if(target == 0) //value / x
+					return value == 0 ? range(-limit, limit, found) : 0;
+				return value % target == 0 ? single(value / target, found) : 0;
+			case Operation.EXPONENT:
+				if(!valueFirst){ //x ^ value
+					if(value == 0)
+						return target == 1 ? range(-limit, limit, found) : 0;
+					if(value == 1)
+						return single(target, found);
+					if(value < 0)
+						return range(-1, 1, found);
+					return range(-MAX_SQUARE_ROOT, MAX_SQUARE_ROOT, found);
+				}
+				if(value == 0) //value ^ x
+					return target == 0 ? range(1, limit, found) : target == 1 ? single(0, found) : 0;
+				if(value == 1 || value == -1)
+					return target == 1 || target == value ? range(-limit, limit, found) : 0;
+				return range(0, MAX_POWER_OF_TWO, found);
+			case Operation.ROOT:
+				if(!valueFirst){ //the value-th root of x: only target^value has it
+					if(value == 0)
+						return 0;
+					long radicand = 1;
+					for(int e=0; e<Math.abs(value) && Math.abs(radicand) <= Operation.MAX_PIECE_SIZE; e++)
+						radicand *= target;
+					return Math.abs(radicand) <= Operation.MAX_PIECE_SIZE ? single((int) radicand, found) : 0;
+				}
+				if(value >= -1 && value <= 1) //the x-th root of value
+					return range(-limit, limit, found);
+				return range(-MAX_POWER_OF_TWO, MAX_POWER_OF_TWO, found);
+			case Operation.MODULO:
+				if(!valueFirst){ //x % value: x is target plus a multiple of value
+					if(value == 0)
+						return 0;
+					int step = Math.abs(value);
+					int count = 0;
+					for(int candidate=target - (target + limit) / step * step; candidate<=limit; candidate+=step)
+						found[count++] = candidate;
+					return count;
+				}
+				if(value == target) //value % x: x divides value - target, or is larger than value
+					return range(-limit, limit, found);
+				return divisors(Math.abs(value - target), found);
+			default: //anything could work
+				return range(-limit, limit, found);
+			}
+		}
+
+		//every divisor of a positive number, positive and negative
+		private static int divisors(int number, int found[]){
+			int count = 0;
+			for(int d=1; d*d<=number; d++){
+				if(number % d == 0){
+					found[count++] = d;
+					found[count++] = -d;
+					if(d * d != number){
+						found[count++] = number / d;
+						found[count++] = -number / d;
+					}
+				}
+			}
+			return count;
+		}
+
+		private static int single(int candidate, int found[]){
+			found[0] = candidate;
+			return 1;
+		}
+
+		private static int range(int from, int to, int found[]){
+			from = Math.max(from, Operation.MIN_PIECE_SIZE);
+			to = Math.min(to, Operation.MAX_PIECE_SIZE);
+			int count = 0;
+			for(int candidate=from; candidate<=to; candidate++)
+				found[count++] = candidate;
+			return count;
+		}
+
+		/*
+		 * Returns false if some piece of mask outside small has the same value as a higher-indexed piece in small,
+		 * so swapping them gives a split with the same multisets.
+		 */
+		private boolean lowestOfEqual(int mask, int small){
+			for(int rest=small; rest!=0; rest&=rest-1){
+				int i = Integer.numberOfTrailingZeros(rest);
+				if((equalBefore[i] & mask & ~small) != 0)
+					return false;
+			}
+			return true;
+		}
+
+		//the pieces of mask in ascending order, in the scratch array for its size
+		private int[] piecesOf(int mask){
+			int result[] = groupPieces[Integer.bitCount(mask)];
+			int size = 0;
+			for(int rest=mask; rest!=0; rest&=rest-1)
+				result[size++] = pieces[Integer.numberOfTrailingZeros(rest)];
+			return result;
+		}
+	}
+}
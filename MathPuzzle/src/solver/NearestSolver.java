@@ -0,0 +1,313 @@
+package solver;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Stack;
+
+import back_end.Bounds;
+import back_end.GameState;
+import back_end.Move;
+import back_end.Operation;
+
+/**
+ * Finds the reachable final value closest to a game state's goal, and a line that reaches it.
+ * For a solvable game state this is just a solution, but for an unsolvable one it tells how close a player could get.
+ *
+ * The search is a depth-first search in place on one int buffer (swap-remove, undone after each move). The closest
+ * final value of every canonical position is memoized for the length of a call to solve, so each position is only
+ * searched once however many move orders lead to it. The search stops as soon as it hits a value that can't be beaten: the goal itself, or the
+ * nearest legal piece value when the goal is out of range. Positions with two pieces left are finished directly.
+ * Moves are skipped without searching when MagnitudeBound shows that nothing reachable after them could end closer to
+ * the goal than the best value the position has found so far, so only positions searched to the end are memoized.
+ * Ties between a value above and one below the goal go to the lower value.
+ *
+ * @author Kelton Finch
+ */
+public class NearestSolver {
+
+	//returned by the search when a position has no legal line to a single piece. Not a valid piece value.
+	private static final int NO_VALUE = Operation.DIVIDE_BY_ZERO;
+
+	/**
+	 * The closest value a game state can be brought to, and how.
+	 */
+	public static class Result {
+		public final int value;
+		public final int distance; //how far value is from the goal
+		public final Stack<Move> moves; //in the same form PuzzleSolver.solve returns
+
+		private Result(int value, int distance, Stack<Move> moves){
+			this.value = value;
+			this.distance = distance;
+			this.moves = moves;
+		}
+
+		public boolean isExact(){
+			return distance == 0;
+		}
+	}
+
+	private final Map<CanonicalState, Integer> memo; //canonical position -> closest final value reachable from it
+
+	//the position being searched
+	private int pieces[];
+	private int numPieces;
+	private OpCounts counts;
+	private Operation ops[]; //one of each kind
+	private int opsAvailable; //an OpCounts mask
+	private boolean opsReusable;
+	private int goal;
+	private Bounds bounds;
+	private int unbeatable; //the closest any final value can be to the goal
+	private Operation availableOps[]; //scratch for building canonical keys
+	private MagnitudeBound bound; //for skipping moves that can't get closer than the best found
+	private int growth[]; //each kind's MagnitudeBound growth set
+	private int sorted[]; //scratch for bounding
+
+	private long nodesExpanded;
+	private long cacheHits;
+	private long cacheMisses;
+
+	public NearestSolver(){
+		memo = new HashMap<CanonicalState, Integer>();
+	}
+
+	/**
+	 * @param gs The game state to be solved for.
+	 * @return The closest value to the goal that gs can be brought to, with a line that reaches it.
+	 * 		   Returns null if no line can be played to the end from gs.
+	 */
+	public Result solve(GameState gs){
+		memo.clear(); //positions are only shared within a solve, so the cache doesn't grow without end
+		load(gs);
+		int value = nearest();
+		if(value == NO_VALUE)
+			return null;
+		List<Step> line = new ArrayList<Step>(numPieces);
+		follow(value, line);
+		return new Result(value, (int) distance(value), Step.toMoves(gs, line));
+	}
+
+	public long getNodesExpanded(){
+		return nodesExpanded;
+	}
+
+	public long getCacheHits(){
+		return cacheHits;
+	}
+
+	public long getCacheMisses(){
+		return cacheMisses;
+	}
+
+	public int getCacheSize(){
+		return memo.size();
+	}
+
+	/**
+	 * Resets the node and cache counters.
+	 */
+	public void resetStatistics(){
+		nodesExpanded = 0;
+		cacheHits = 0;
+		cacheMisses = 0;
+	}
+
+	public void clearCache(){
+		memo.clear();
+	}
+
+	private void load(GameState gs){
+		numPieces = gs.getNumPieces();
+		pieces = new int[numPieces];
+		for(int i=0; i<numPieces; i++)
+			pieces[i] = gs.pieceAt(i);
+		counts = new OpCounts(gs);
+		ops = counts.kinds;
+		availableOps = new Operation[gs.getNumOps()];
+		opsAvailable = counts.all;
+		opsReusable = gs.isOpsReusable();
+		goal = gs.getGoal();
+		bounds = gs.getBounds();
+		unbeatable = Math.min(Math.max(goal, bounds.minPieceSize), bounds.maxPieceSize);
+		bound = new MagnitudeBound(ops, ops.length, bounds);
+		growth = new int[ops.length];
+		for(int k=0; k<ops.length; k++)
+			growth[k] = MagnitudeBound.growthOf(ops[k]);
+		sorted = new int[numPieces];
+	}
+
+	/*
+	 * Returns the closest final value to the goal reachable from the current position, or NO_VALUE.
+	 */
+	private int nearest(){
+		nodesExpanded++;
+		if(numPieces == 1)
+			return pieces[0];
+		if(numPieces == 2)
+			return nearestLastMove();
+
+		CanonicalState key = canonicalKey();
+		Integer cached = memo.get(key);
+		if(cached != null){
+			cacheHits++;
+			return cached;
+		}
+		cacheMisses++;
+
+		int best = NO_VALUE;
+		search:
+		for(int i=0; i<numPieces; i++){
+			for(int j=i+1; j<numPieces; j++){
+				for(int k=0; k<ops.length; k++){
+					if(!counts.has(opsAvailable, k))
+						continue;
+					best = closer(best, afterMove(i, j, k, pieces[i], pieces[j], best));
+					if(!ops[k].isCommutative)
+						best = closer(best, afterMove(i, j, k, pieces[j], pieces[i], best));
+					if(best == unbeatable)
+						break search;
+				}
+			}
+		}
+		memo.put(key, best);
+		return best;
+	}
+
+	/*
+	 * Combines the pieces in slots i and j (i < j) into slot i, finds the closest final value from there,
+	 * then undoes the move. Returns NO_VALUE if the move is illegal, or if nothing after it can beat best.
+	 */
+	private int afterMove(int i, int j, int k, int first, int second, int best){
+		int result = ops[k].evaluate(first, second, bounds);
+		if(!Operation.isValid(result))
+			return NO_VALUE;
+
+		int a = pieces[i];
+		int b = pieces[j];
+		int last = pieces[numPieces-1];
+		int opsBefore = opsAvailable;
+
+		pieces[i] = result;
+		pieces[j] = last;
+		numPieces--;
+		opsAvailable = counts.use(opsAvailable, k);
+
+		int value = Operation.isValid(best) && cannotBeat(distance(best)) ? NO_VALUE : nearest();
+
+		numPieces++;
+		pieces[numPieces-1] = last;
+		pieces[j] = b;
+		pieces[i] = a;
+		opsAvailable = opsBefore;
+		return value;
+	}
+
+	private int nearestLastMove(){
+		int best = NO_VALUE;
+		for(int k=0; k<ops.length; k++){
+			if(!counts.has(opsAvailable, k))
+				continue;
+			best = closer(best, ops[k].evaluate(pieces[0], pieces[1], bounds));
+			if(!ops[k].isCommutative)
+				best = closer(best, ops[k].evaluate(pieces[1], pieces[0], bounds));
+			if(best == unbeatable)
+				break;
+		}
+		return best;
+	}
+
+	/*
+	 * Walks down from the current position along moves whose closest final value is target, adding them to line.
+	 * Every position on the way is already memoized, so this only costs a lookup per move tried.
+	 */
+	private void follow(int target, List<Step> line){
+		if(numPieces == 1)
+			return;
+		for(int i=0; i<numPieces; i++){
+			for(int j=i+1; j<numPieces; j++){
+				for(int k=0; k<ops.length; k++){
+					if(!counts.has(opsAvailable, k))
+						continue;
+					if(followMove(i, j, k, pieces[i], pieces[j], target, line))
+						return;
+					if(!ops[k].isCommutative && followMove(i, j, k, pieces[j], pieces[i], target, line))
+						return;
+				}
+			}
+		}
+	}
+
+	private boolean followMove(int i, int j, int k, int first, int second, int target, List<Step> line){
+		int result = ops[k].evaluate(first, second, bounds);
+		if(!Operation.isValid(result))
+			return false;
+
+		int a = pieces[i];
+		int b = pieces[j];
+		int last = pieces[numPieces-1];
+		int opsBefore = opsAvailable;
+
+		pieces[i] = result;
+		pieces[j] = last;
+		numPieces--;
+		opsAvailable = counts.use(opsAvailable, k);
+
+		//moves the search skipped can't reach target, and would cost a full search to rule out here
+		if(!cannotBeat(distance(target)) && nearest() == target){ //the move is kept, so the position is left as it is
+			line.add(new Step(first, second, ops[k]));
+			follow(target, line);
+			return true;
+		}
+
+		numPieces++;
+		pieces[numPieces-1] = last;
+		pieces[j] = b;
+		pieces[i] = a;
+		opsAvailable = opsBefore;
+		return false;
+	}
+
+	//returns whichever of a and b is closer to the goal, preferring the lower on a tie.
+	//Invalid results (including NO_VALUE) lose to anything.
+	private int closer(int a, int b){
+		if(!Operation.isValid(a))
+			return Operation.isValid(b) ? b : NO_VALUE;
+		if(!Operation.isValid(b))
+			return a;
+		long distanceA = distance(a);
+		long distanceB = distance(b);
+		if(distanceA != distanceB)
+			return distanceA < distanceB ? a : b;
+		return Math.min(a, b);
+	}
+
+	private long distance(int value){
+		return Math.abs((long) value - goal);
+	}
+
+	//true if no final value reachable from the current position can be within distance of the goal
+	private boolean cannotBeat(long distance){
+		if(numPieces == 1)
+			return distance(pieces[0]) > distance;
+		int growthLeft = 0;
+		for(int k=0; k<ops.length; k++){
+			if(counts.has(opsAvailable, k))
+				growthLeft |= growth[k];
+		}
+		PackedState.sortInto(pieces, numPieces, sorted);
+		long most = bound.maxMagnitude(sorted, numPieces, growthLeft); //every final value is within [-most, most]
+		return Math.abs((long) goal) - most > distance;
+	}
+
+	private CanonicalState canonicalKey(){
+		int numAvailable = 0;
+		for(int k=0; k<ops.length; k++){
+			for(int c=counts.count(opsAvailable, k); c>0; c--)
+				availableOps[numAvailable++] = ops[k];
+		}
+		return CanonicalState.of(pieces, numPieces, availableOps, numAvailable, goal, opsReusable, bounds);
+	}
+}
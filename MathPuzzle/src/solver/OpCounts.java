@@ -0,0 +1,107 @@
+package solver;
+
+import back_end.GameState;
+import back_end.Operation;
+
+/**
+ * A puzzle's operations grouped by kind, with which are still available kept as a count of each kind packed into one
+ * int, for searches that make moves in place.
+ *
+ * Each kind gets one operation (the first of its kind) and a run of adjacent bits in the mask, one bit per copy the
+ * puzzle has. Counts are kept in unary: using an operation clears the lowest set bit of its kind's run, so a kind with
+ * c copies left always has the top c bits of its run set. Positions that differ only in which of two equal operations
+ * was used then have the same mask, so masks can go straight into state keys, and searches that loop over kinds rather
+ * than operations never try equal operations as separate moves. Reusable operations are never used up, so each kind
+ * gets a single bit however many copies the puzzle has.
+ *
+ * @author Kelton Finch
+ */
+final class OpCounts {
+
+	final Operation kinds[]; //one operation of each kind, in order of first appearance
+	final int all; //the mask with every operation available
+	final boolean reusable;
+	private final int runs[]; //runs[k] has the bits belonging to kinds[k]
+
+	OpCounts(GameState gs){
+		reusable = gs.isOpsReusable();
+		Operation found[] = new Operation[gs.getNumOps()];
+		int copies[] = new int[found.length];
+		int numKinds = 0;
+		for(int k=0; k<gs.getNumOps(); k++){
+			int kind = indexOf(found, numKinds, gs.opAt(k));
+			if(kind < 0){
+				kind = numKinds++;
+				found[kind] = gs.opAt(k);
+			}
+			copies[kind]++;
+		}
+
+		kinds = new Operation[numKinds];
+		runs = new int[numKinds];
+		int shift = 0;
+		for(int k=0; k<numKinds; k++){
+			kinds[k] = found[k];
+			int length = reusable ? 1 : copies[k];
+			runs[k] = ((1 << length) - 1) << shift;
+			shift += length;
+		}
+		all = (1 << shift) - 1;
+	}
+
+	int numKinds(){
+		return kinds.length;
+	}
+
+	/**
+	 * @return True if kinds[k] has a copy left in available.
+	 */
+	boolean has(int available, int k){
+		return (available & runs[k]) != 0;
+	}
+
+	/**
+	 * @return The copies of kinds[k] left in available.
+	 */
+	int count(int available, int k){
+		return Integer.bitCount(available & runs[k]);
+	}
+
+	/**
+	 * @return available after using one copy of kinds[k], which must have one left.
+	 */
+	int use(int available, int k){
+		if(reusable)
+			return available;
+		return available & ~Integer.lowestOneBit(available & runs[k]);
+	}
+
+	/**
+	 * @return The mask of gs's operations, or -1 if gs has operations of a kind not here, or more copies of one.
+	 */
+	int maskOf(GameState gs){
+		if(gs.isOpsReusable() != reusable)
+			return -1;
+		int mask = 0;
+		for(int k=0; k<gs.getNumOps(); k++){
+			int kind = indexOf(kinds, kinds.length, gs.opAt(k));
+			if(kind < 0)
+				return -1;
+			int left = runs[kind] & ~mask;
+			if(left == 0 && reusable) //another copy of a kind that's never used up
+				continue;
+			if(left == 0)
+				return -1;
+			mask |= Integer.highestOneBit(left); //counts fill a run from the top down
+		}
+		return mask;
+	}
+
+	private static int indexOf(Operation ops[], int numOps, Operation op){
+		for(int k=0; k<numOps; k++){
+			if(ops[k].kind == op.kind)
+				return k;
+		}
+		return -1;
+	}
+}
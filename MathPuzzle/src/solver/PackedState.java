@@ -0,0 +1,102 @@
+package solver;
+
+import back_end.Bounds;
+import back_end.GameState;
+import back_end.Operation;
+
+/**
+ * Packs a position into two longs, for hashing and storing positions without allocating anything.
+ *
+ * Pieces are stored in sorted order, 11 bits each (value - MIN_PIECE_SIZE + 1, so 0 marks an empty slot), five to a
+ * long in the low 55 bits. The bitmask of operations still available (one bit per op index, up to MAX_OPS) is split
+ * across the spare bits above: the low five bits of the mask in the high word and the rest in the low word.
+ * The goal, the operations themselves and whether they're reusable aren't stored, so packed positions are only
+ * comparable within one puzzle. Sorting makes positions that differ only in piece order pack identically.
+ *
+ * @author Kelton Finch
+ */
+public final class PackedState {
+
+	public static final int BITS_PER_PIECE = 11;
+	private static final int PIECES_PER_WORD = 5;
+	private static final long PIECE_MASK = (1L << BITS_PER_PIECE) - 1;
+	private static final int PIECE_OFFSET = 1 - Operation.MIN_PIECE_SIZE;
+	private static final int OPS_SHIFT = BITS_PER_PIECE * PIECES_PER_WORD;
+	private static final int OPS_PER_WORD = 5;
+	private static final int OPS_WORD_MASK = (1 << OPS_PER_WORD) - 1;
+
+	private PackedState(){ }
+
+	/**
+	 * @return True if every position of a puzzle with the given bounds can be packed: at most MAX_PIECES pieces and
+	 * 		   MAX_OPS operations, with pieces no further from the default range than 11 bits allow.
+	 */
+	public static boolean fits(Bounds bounds){
+		return bounds.maxPieces <= GameState.MAX_PIECES && bounds.maxOps <= GameState.MAX_OPS
+				&& bounds.minPieceSize + PIECE_OFFSET >= 1 && bounds.maxPieceSize + PIECE_OFFSET <= PIECE_MASK;
+	}
+
+	/**
+	 * @param sortedPieces At most MAX_PIECES pieces, in ascending order (see sortInto).
+	 * @param numPieces How many of sortedPieces are in the position. At least one.
+	 * @param opsMask Bit k is set if op k is still available.
+	 * @return The high word of the packed position. Never 0, so 0 can mark an empty slot.
+	 */
+	public static long high(int sortedPieces[], int numPieces, int opsMask){
+		return pack(sortedPieces, 0, numPieces) | (long) (opsMask & OPS_WORD_MASK) << OPS_SHIFT;
+	}
+
+	/**
+	 * @return The low word of the packed position. See high.
+	 */
+	public static long low(int sortedPieces[], int numPieces, int opsMask){
+		return pack(sortedPieces, PIECES_PER_WORD, numPieces) | (long) (opsMask >>> OPS_PER_WORD) << OPS_SHIFT;
+	}
+
+	public static int numPieces(long high, long low){
+		int count = 0;
+		while(count < GameState.MAX_PIECES && pieceCode(high, low, count) != 0)
+			count++;
+		return count;
+	}
+
+	/**
+	 * @return The index-th smallest piece of the packed position.
+	 */
+	public static int pieceAt(long high, long low, int index){
+		return (int) pieceCode(high, low, index) - PIECE_OFFSET;
+	}
+
+	public static int opsMask(long high, long low){
+		return (int) (high >>> OPS_SHIFT) & OPS_WORD_MASK | (int) (low >>> OPS_SHIFT) << OPS_PER_WORD;
+	}
+
+	/**
+	 * Copies the first numPieces pieces into sorted in ascending order. Insertion sort, which beats Arrays.sort on
+	 * a handful of pieces and allocates nothing.
+	 */
+	public static void sortInto(int pieces[], int numPieces, int sorted[]){
+		for(int i=0; i<numPieces; i++){
+			int piece = pieces[i];
+			int j = i;
+			while(j > 0 && sorted[j-1] > piece){
+				sorted[j] = sorted[j-1];
+				j--;
+			}
+			sorted[j] = piece;
+		}
+	}
+
+	private static long pack(int sortedPieces[], int from, int numPieces){
+		long word = 0;
+		int to = Math.min(numPieces, from + PIECES_PER_WORD);
+		for(int i=from; i<to; i++)
+			word |= (long) (sortedPieces[i] + PIECE_OFFSET) << (BITS_PER_PIECE * (i - from));
+		return word;
+	}
+
+	private static long pieceCode(long high, long low, int index){
+		long word = index < PIECES_PER_WORD ? high : low;
+		return word >>> (BITS_PER_PIECE * (index % PIECES_PER_WORD)) & PIECE_MASK;
+	}
+}
@@ -0,0 +1,160 @@
+package solver;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.Stack;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+
+import back_end.GameState;
+import back_end.Move;
+
+/**
+ * Multi-threaded version of PuzzleSolver.
+ *
+ * The top plies of the move tree are split into fork/join tasks, one per distinct child position (children that only
+ * differ by which of two equal pieces or operations was used have the same canonical state), and idle workers steal
+ * them from busy ones. Below the split each task runs its own InPlaceSearch, so it searches exactly the way
+ * PuzzleSolver does: in place, skipping duplicate children and pruned by a magnitude bound, which each worker thread
+ * keeps between tasks. As soon as any task finds a winning line every other task gives up at its next checkpoint.
+ *
+ * Most rolls are settled within a few thousand nodes, far quicker than forking their children, so a position is only
+ * split once a sequential search of it has run to its first checkpoint without settling it. Only the children that
+ * search hadn't finished are forked, in the order it would have taken them, so on one worker the split costs little
+ * more than the sequential search would have.
+ *
+ * @author Kelton Finch
+ */
+public class ParallelPuzzleSolver {
+
+	private static final int SPLIT_DEPTH = 1; //plies that are split into tasks
+	private static final int MIN_SPLIT_PIECES = 5; //positions with fewer pieces are always searched sequentially
+
+	private final ForkJoinPool pool;
+	private final ThreadLocal<MagnitudeBound> bounds = new ThreadLocal<MagnitudeBound>(){ //a bound isn't thread safe
+		@Override
+		protected MagnitudeBound initialValue(){
+			return new MagnitudeBound();
+		}
+	};
+
+	/**
+	 * Creates a solver that uses one thread per available processor.
+	 */
+	public ParallelPuzzleSolver(){
+		this(new ForkJoinPool());
+	}
+
+	public ParallelPuzzleSolver(int parallelism){
+		this(new ForkJoinPool(parallelism));
+	}
+
+	public ParallelPuzzleSolver(ForkJoinPool pool){
+		this.pool = pool;
+	}
+
+	/**
+	 * Finds a solution for the given game state.
+	 * @param gs The game state to be solved for.
+	 * @return A solution, in the form of a stack of moves. Pop a move off the stack, apply it to the game state,
+	 * 		   and repeat until the stack is empty, and the resulting position will be winning.
+	 * 		   Returns null if the given game state has no solution.
+	 */
+	public Stack<Move> solve(GameState gs){
+		if(gs.getNumPieces() == 1) //nothing to search, or to split
+			return gs.pieceAt(0) == gs.getGoal() ? new Stack<Move>() : null;
+
+		AtomicReference<Path> winner = new AtomicReference<Path>();
+		pool.invoke(new SolveTask(gs, null, 0, winner));
+
+		Path path = winner.get();
+		if(path == null)
+			return null;
+		Stack<Move> result = new Stack<Move>();
+		for(; path != null; path = path.previous) //walks from the last move back to the first, leaving the first on top
+			result.push(path.move);
+		return result;
+	}
+
+	public void shutdown(){
+		pool.shutdown();
+	}
+
+	/*
+	 * Immutable list of the moves leading to a position, last move first.
+	 * Tasks on different threads share their common prefix.
+	 */
+	private static class Path {
+		final Move move;
+		final Path previous;
+
+		Path(Move move, Path previous){
+			this.move = move;
+			this.previous = previous;
+		}
+	}
+
+	private class SolveTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final GameState gs;
+		private final Path path; //moves leading to gs
+		private final int depth;
+		private final AtomicReference<Path> winner;
+
+		SolveTask(GameState gs, Path path, int depth, AtomicReference<Path> winner){
+			this.gs = gs;
+			this.path = path;
+			this.depth = depth;
+			this.winner = winner;
+		}
+
+		@Override
+		protected void compute(){
+			if(winner.get() != null) //someone else already won, don't start
+				return;
+			final boolean split = depth < SPLIT_DEPTH && gs.getNumPieces() >= MIN_SPLIT_PIECES;
+
+			InPlaceSearch search = new InPlaceSearch(gs, bounds.get());
+			boolean found = search.run(new InPlaceSearch.Checkpoint(){
+				@Override
+				public boolean keepGoing(long nodes, int depth){
+					return !split && winner.get() == null; //a position to split stops here, and hands its children out
+				}
+			});
+			if(split && search.wasAbandoned() && winner.get() == null){
+				invokeAll(children(search));
+				return;
+			}
+			if(!found)
+				return;
+			Path result = path;
+			Stack<Move> line = Step.toMoves(gs, search.line());
+			while(!line.isEmpty())
+				result = new Path(line.pop(), result);
+			winner.compareAndSet(null, result);
+		}
+
+		/*
+		 * One task per distinct child position the abandoned search hadn't finished. Children with the same canonical
+		 * state as one it did finish are skipped too.
+		 */
+		private List<SolveTask> children(InPlaceSearch abandoned){
+			List<Step> moves = abandoned.firstMoves();
+			int firstUnfinished = abandoned.getFirstMovesStarted() - 1;
+			List<SolveTask> result = new ArrayList<SolveTask>();
+			Set<CanonicalState> seen = new HashSet<CanonicalState>();
+			for(int m=0; m<moves.size(); m++){
+				Move move = Step.toMoves(gs, moves.subList(m, m+1)).pop();
+				GameState next = gs.tryAfterCombine(move.firstIndex, move.secondIndex, move.opIndex);
+				if(seen.add(CanonicalState.of(next)) && m >= firstUnfinished)
+					result.add(new SolveTask(next, new Path(move, path), depth+1, winner));
+			}
+			return result;
+		}
+	}
+}
@@ -0,0 +1,210 @@
+package solver;
+
+import java.util.concurrent.CancellationException;
+
+import back_end.Bounds;
+import back_end.GameState;
+import back_end.Operation;
+
+/**
+ * Answers whether positions in a game are still solvable, for checking after every move, undo or reset.
+ *
+ * The root puzzle is analyzed once, exhaustively: every position reachable from it with three or more pieces left is
+ * searched and its solvability stored in a StateTable, keyed on its packed pieces and how many of each kind of operation
+ * it has left (see OpCounts), so equal operations are only tried once and using either leaves the same key. Any position
+ * the player can reach from the root is then answered with one lookup, and positions with two or fewer pieces are
+ * cheaper to check directly than to look up. Asking about a position of a different puzzle (another goal, or operations
+ * the root doesn't have) throws the table away and analyzes that position as the new root.
+ * Only puzzles whose positions can be packed are supported (see PackedState.fits), which includes the default bounds.
+ *
+ * @author Kelton Finch
+ */
+public class PositionEvaluator {
+
+	private static final int UNSOLVABLE = 0;
+	private static final int SOLVABLE = 1;
+	private static final int UNKNOWN = -1;
+	private static final long CHECK_MASK = (1 << 16) - 1; //the checkpoint is called every 2^16 nodes
+
+	private final StateTable solvable; //packed position -> SOLVABLE or UNSOLVABLE
+
+	//the puzzle every position in the table belongs to
+	private OpCounts counts;
+	private Operation ops[]; //one of each kind
+	private boolean opsReusable;
+	private int goal;
+	private Bounds bounds;
+
+	//the position being analyzed
+	private int pieces[];
+	private int numPieces;
+	private int opsAvailable; //an OpCounts mask
+	private final int sorted[]; //scratch for packing
+
+	private long nodesExpanded;
+	private InPlaceSearch.Checkpoint checkpoint; //only while analyzing the root, and may be null
+
+	/**
+	 * Analyzes every position reachable from root.
+	 * @param root The starting position of the game.
+	 * @throws IllegalArgumentException if root's positions can't be packed.
+	 */
+	public PositionEvaluator(GameState root){
+		this(root, null);
+	}
+
+	/*
+	 * Analyzes every position reachable from root, calling checkpoint every so often.
+	 * Throws CancellationException if the checkpoint abandons the analysis.
+	 */
+	PositionEvaluator(GameState root, InPlaceSearch.Checkpoint checkpoint){
+		solvable = new StateTable();
+		sorted = new int[GameState.MAX_PIECES];
+		setRoot(root);
+		load(root);
+		this.checkpoint = checkpoint;
+		analyze();
+		this.checkpoint = null;
+	}
+
+	/**
+	 * @param gs A position in the game.
+	 * @return true if gs has a solution.
+	 */
+	public boolean isSolvable(GameState gs){
+		if(gs.getNumPieces() == 1)
+			return gs.pieceAt(0) == gs.getGoal();
+		if(!load(gs)){
+			setRoot(gs);
+			load(gs);
+		}
+		if(numPieces > 2){
+			int cached = solvable.get(packedHigh(), packedLow(), UNKNOWN);
+			if(cached != UNKNOWN)
+				return cached == SOLVABLE;
+		}
+		return analyze();
+	}
+
+	public long getNodesExpanded(){
+		return nodesExpanded;
+	}
+
+	public int getCacheSize(){
+		return solvable.size();
+	}
+
+	private void setRoot(GameState root){
+		if(!PackedState.fits(root.getBounds()))
+			throw new IllegalArgumentException("PositionEvaluator can't pack positions within " + root.getBounds());
+		solvable.clear();
+		counts = new OpCounts(root);
+		ops = counts.kinds;
+		opsReusable = root.isOpsReusable();
+		goal = root.getGoal();
+		bounds = root.getBounds();
+	}
+
+	/*
+	 * Loads gs as the position to analyze, with its ops matched up to the root's.
+	 * Returns false if gs isn't a position of the root's puzzle.
+	 */
+	private boolean load(GameState gs){
+		if(gs.getGoal() != goal || !gs.getBounds().equals(bounds))
+			return false;
+		int mask = counts.maskOf(gs);
+		if(mask < 0 || (opsReusable && mask != counts.all))
+			return false;
+		opsAvailable = mask;
+
+		numPieces = gs.getNumPieces();
+		pieces = new int[numPieces];
+		for(int i=0; i<numPieces; i++)
+			pieces[i] = gs.pieceAt(i);
+		return true;
+	}
+
+	/*
+	 * Returns whether the current position is solvable. Unlike a solver, this doesn't stop at the first solution:
+	 * every move is followed, so every position below this one ends up in the table.
+	 */
+	private boolean analyze(){
+		nodesExpanded++;
+		if((nodesExpanded & CHECK_MASK) == 0 && checkpoint != null && !checkpoint.keepGoing(nodesExpanded, 0))
+			throw new CancellationException("Analysis abandoned");
+		if(numPieces == 2)
+			return lastMoveWins();
+
+		long high = packedHigh();
+		long low = packedLow();
+		int cached = solvable.get(high, low, UNKNOWN);
+		if(cached != UNKNOWN)
+			return cached == SOLVABLE;
+
+		boolean result = false;
+		for(int i=0; i<numPieces; i++){
+			for(int j=i+1; j<numPieces; j++){
+				for(int k=0; k<ops.length; k++){
+					if(!counts.has(opsAvailable, k))
+						continue;
+					result |= afterMove(i, j, k, pieces[i], pieces[j]);
+					if(!ops[k].isCommutative)
+						result |= afterMove(i, j, k, pieces[j], pieces[i]);
+				}
+			}
+		}
+		solvable.put(high, low, result ? SOLVABLE : UNSOLVABLE);
+		return result;
+	}
+
+	/*
+	 * Combines the pieces in slots i and j (i < j) into slot i, analyzes the position from there,
+	 * then undoes the move. Returns false if the move is illegal.
+	 */
+	private boolean afterMove(int i, int j, int k, int first, int second){
+		int result = ops[k].evaluate(first, second, bounds);
+		if(!Operation.isValid(result))
+			return false;
+
+		int a = pieces[i];
+		int b = pieces[j];
+		int last = pieces[numPieces-1];
+		int opsBefore = opsAvailable;
+
+		pieces[i] = result;
+		pieces[j] = last;
+		numPieces--;
+		opsAvailable = counts.use(opsAvailable, k);
+
+		boolean solved = analyze();
+
+		numPieces++;
+		pieces[numPieces-1] = last;
+		pieces[j] = b;
+		pieces[i] = a;
+		opsAvailable = opsBefore;
+		return solved;
+	}
+
+	private boolean lastMoveWins(){
+		for(int k=0; k<ops.length; k++){
+			if(!counts.has(opsAvailable, k))
+				continue;
+			if(ops[k].evaluate(pieces[0], pieces[1], bounds) == goal)
+				return true;
+			if(!ops[k].isCommutative && ops[k].evaluate(pieces[1], pieces[0], bounds) == goal)
+				return true;
+		}
+		return false;
+	}
+
+	private long packedHigh(){
+		PackedState.sortInto(pieces, numPieces, sorted);
+		return PackedState.high(sorted, numPieces, opsAvailable);
+	}
+
+	//only valid straight after packedHigh, which sorts the pieces
+	private long packedLow(){
+		return PackedState.low(sorted, numPieces, opsAvailable);
+	}
+}
@@ -0,0 +1,15 @@
+package solver;
+
+/**
+ * Receives progress reports from a running search.
+ *
+ * @author Kelton Finch
+ */
+public interface ProgressListener {
+
+	/**
+	 * @param nodesSearched Positions searched so far.
+	 * @param depth Moves made along the line being searched when the report was taken.
+	 */
+	void progress(long nodesSearched, int depth);
+}
@@ -0,0 +1,221 @@
+package solver;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import back_end.GameState;
+import back_end.Operation;
+
+/**
+ * Generates puzzles that are guaranteed to be solvable, by picking the goal from the values the pieces can reach
+ * rather than rolling a goal and checking it afterwards.
+ *
+ * Takes the same parameters as the GameState(minGoal, maxGoal, numPieces, maxPiece) constructor. The solvable goals
+ * of each multiset of pieces are worked out once, from a SolvabilityAtlas if one covers them or with one
+ * ReachabilitySolver analysis otherwise, and cached.
+ *
+ * @author Kelton Finch
+ */
+public class PuzzleGenerator {
+
+	/**
+	 * How likely each solvable puzzle is to be generated.
+	 */
+	public enum Weighting {
+		/**
+		 * Pieces are rolled as independent dice and the goal is picked uniformly from the goals that roll can reach.
+		 * Only rolls that can't reach any goal in range are rolled again.
+		 */
+		DICE_ROLL,
+		/**
+		 * Every solvable (multiset of pieces, goal) pair is equally likely. The first puzzle analyzes every multiset of
+		 * pieces up front, which takes a while for more than five or six pieces unless an atlas covers them.
+		 */
+		UNIFORM
+	}
+
+	private final int minGoal;
+	private final int maxGoal;
+	private final int numPieces;
+	private final int maxPiece;
+	private final Weighting weighting;
+	private final Random random;
+	private final SolvabilityAtlas atlas; //may be null
+
+	private final ReachabilitySolver solver;
+	private final Map<CanonicalState, long[]> solvableGoals; //multiset of pieces -> bitmap of its solvable goals
+
+	//for UNIFORM: every multiset with a solvable goal, and the running total of solvable goals up to and including it
+	private int multisets[][];
+	private long cumulativeGoals[];
+
+	/**
+	 * Creates a generator for the same puzzles GameState() rolls, weighted like dice rolls.
+	 */
+	public PuzzleGenerator(){
+		this(GameState.DEFAULT_MIN_GOAL, GameState.DEFAULT_MAX_GOAL, GameState.DEFAULT_NUM_PIECES,
+				GameState.DEFAULT_MAX_PIECE, Weighting.DICE_ROLL, new Random(), null);
+	}
+
+	/**
+	 * @param minGoal The lowest the goal can be generated (inclusive)
+	 * @param maxGoal The highest the goal can be generated (exclusive)
+	 * @param numPieces The number of pieces to be generated
+	 * @param maxPiece Pieces generated will be between 1 and maxPiece (inclusive)
+	 * @param weighting How likely each solvable puzzle is to be generated.
+	 * @param random The source of randomness.
+	 * @param atlas An atlas to read solvable goals from where it covers them, or null.
+	 */
+	public PuzzleGenerator(int minGoal, int maxGoal, int numPieces, int maxPiece, Weighting weighting, Random random,
+			SolvabilityAtlas atlas){
+		if(maxGoal <= minGoal || numPieces < 1 || maxPiece < 1)
+			throw new IllegalArgumentException("Bad puzzle parameters");
+		this.minGoal = minGoal;
+		this.maxGoal = maxGoal;
+		this.numPieces = numPieces;
+		this.maxPiece = maxPiece;
+		this.weighting = weighting;
+		this.random = random;
+		this.atlas = atlas;
+		this.solver = new ReachabilitySolver();
+		this.solvableGoals = new HashMap<CanonicalState, long[]>();
+	}
+
+	/**
+	 * @return A new solvable puzzle, with all default operations available and reusable.
+	 * @throws IllegalStateException if no puzzle with these parameters is solvable.
+	 */
+	public GameState next(){
+		if(weighting == Weighting.UNIFORM)
+			return nextUniform();
+
+		int pieces[] = new int[numPieces];
+		while(true){
+			for(int i=0; i<numPieces; i++)
+				pieces[i] = random.nextInt(maxPiece) + 1;
+			long goals[] = solvableGoals(pieces);
+			int count = count(goals);
+			if(count > 0){
+				Operation ops[] = GameState.defaultOps();
+				return new GameState(pieces, ops, numPieces, ops.length, pickGoal(goals, random.nextInt(count)), true);
+			}
+			//this roll can't reach any goal in range, so make sure some roll can before rolling again
+			if(multisets == null)
+				buildIndex();
+			if(cumulativeGoals.length == 0)
+				throw new IllegalStateException("No solvable puzzles with these parameters");
+		}
+	}
+
+	private GameState nextUniform(){
+		if(multisets == null)
+			buildIndex();
+		if(cumulativeGoals.length == 0)
+			throw new IllegalStateException("No solvable puzzles with these parameters");
+
+		long target = (long) (random.nextDouble() * cumulativeGoals[cumulativeGoals.length-1]);
+		int m = Arrays.binarySearch(cumulativeGoals, target + 1);
+		if(m < 0)
+			m = -m - 1; //first multiset whose running total exceeds target
+		long before = m == 0 ? 0 : cumulativeGoals[m-1];
+
+		int pieces[] = multisets[m].clone();
+		for(int i=pieces.length-1; i>0; i--){ //shuffled, so the pieces don't come out sorted
+			int j = random.nextInt(i+1);
+			int swap = pieces[i];
+			pieces[i] = pieces[j];
+			pieces[j] = swap;
+		}
+		int goal = pickGoal(solvableGoals(multisets[m]), (int) (target - before));
+		Operation ops[] = GameState.defaultOps();
+		return new GameState(pieces, ops, numPieces, ops.length, goal, true);
+	}
+
+	/*
+	 * Analyzes every multiset of pieces, keeping those with at least one solvable goal.
+	 */
+	private void buildIndex(){
+		int numMultisets = numMultisets();
+		int found[][] = new int[numMultisets][];
+		long totals[] = new long[numMultisets];
+		int size = 0;
+		long total = 0;
+
+		int pieces[] = new int[numPieces];
+		Arrays.fill(pieces, 1);
+		do{
+			int count = count(solvableGoals(pieces));
+			if(count > 0){
+				total += count;
+				found[size] = pieces.clone();
+				totals[size] = total;
+				size++;
+			}
+		}while(SolvabilityAtlas.nextMultiset(pieces, maxPiece));
+
+		multisets = Arrays.copyOf(found, size);
+		cumulativeGoals = Arrays.copyOf(totals, size);
+	}
+
+	/*
+	 * Returns the bitmap of solvable goals (bit g - minGoal) for the given pieces, in any order.
+	 */
+	private long[] solvableGoals(int pieces[]){
+		Operation ops[] = GameState.defaultOps();
+		CanonicalState key = CanonicalState.of(pieces, numPieces, ops, ops.length, CanonicalState.ANY_GOAL, true);
+		long goals[] = solvableGoals.get(key);
+		if(goals != null)
+			return goals;
+
+		goals = new long[(maxGoal - minGoal + 63) >>> 6];
+		GameState lowest = new GameState(pieces.clone(), ops, numPieces, ops.length, minGoal, true);
+		GameState highest = new GameState(pieces.clone(), ops, numPieces, ops.length, maxGoal-1, true);
+		if(atlas != null && atlas.covers(lowest) && atlas.covers(highest)){ //atlases cover a contiguous range of goals
+			for(int goal=minGoal; goal<maxGoal; goal++){
+				if(atlas.isSolvable(new GameState(lowest.getPieces(), ops, numPieces, ops.length, goal, true)))
+					goals[(goal - minGoal) >>> 6] |= 1L << (goal - minGoal);
+			}
+		}
+		else{
+			ReachabilitySolver.Reachability reachable = solver.analyze(lowest);
+			for(int goal=minGoal; goal<maxGoal; goal++){
+				if(reachable.isReachable(goal))
+					goals[(goal - minGoal) >>> 6] |= 1L << (goal - minGoal);
+			}
+		}
+		solvableGoals.put(key, goals);
+		return goals;
+	}
+
+	private static int count(long goals[]){
+		int count = 0;
+		for(long word : goals)
+			count += Long.bitCount(word);
+		return count;
+	}
+
+	//returns the goal of the n-th (from 0) set bit
+	private int pickGoal(long goals[], int n){
+		for(int w=0; w<goals.length; w++){
+			int count = Long.bitCount(goals[w]);
+			if(n < count){
+				long word = goals[w];
+				for(int skip=0; skip<n; skip++)
+					word &= word - 1; //clears the lowest set bit
+				return minGoal + 64*w + Long.numberOfTrailingZeros(word);
+			}
+			n -= count;
+		}
+		throw new IllegalArgumentException("Not that many solvable goals");
+	}
+
+	//number of multisets of numPieces pieces between 1 and maxPiece
+	private int numMultisets(){
+		long count = 1;
+		for(int i=1; i<=numPieces; i++)
+			count = count * (maxPiece + i - 1) / i;
+		return (int) Math.min(count, Integer.MAX_VALUE);
+	}
+}
@@ -0,0 +1,150 @@
+package solver;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import back_end.GameState;
+
+/**
+ * Keeps a few solvable puzzles ready ahead of time, so dealing a new game doesn't wait on generating one.
+ *
+ * A background thread fills a bounded queue from a PuzzleGenerator and tops it up as puzzles are taken. Replacing the
+ * generator (e.g. when the puzzle settings change) throws away every queued puzzle and starts filling a new queue.
+ *
+ * @author Kelton Finch
+ */
+public class PuzzleQueue {
+
+	public static final int DEFAULT_CAPACITY = 8;
+	private static final long WAIT_NANOS = 10 * 1000000L; //how long next waits on a queue before checking it's still current
+
+	private final int capacity;
+	private final Thread worker;
+	private volatile boolean running;
+
+	//replaced together whenever the generator changes, so puzzles from an old generator never reach the new queue
+	private PuzzleGenerator generator;
+	private volatile BlockingQueue<GameState> queue;
+	private volatile RuntimeException failure; //thrown by the current generator, which is then given up on
+
+	public PuzzleQueue(PuzzleGenerator generator){
+		this(generator, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param generator Where puzzles come from. Only used by the background thread from now on.
+	 * @param capacity How many puzzles to keep ready.
+	 */
+	public PuzzleQueue(PuzzleGenerator generator, int capacity){
+		this.capacity = capacity;
+		this.generator = generator;
+		this.queue = new ArrayBlockingQueue<GameState>(capacity);
+		this.running = true;
+		worker = new Thread(new Runnable(){
+			@Override
+			public void run(){
+				fill();
+			}
+		}, "PuzzleQueue worker");
+		worker.setDaemon(true);
+		worker.start();
+	}
+
+	/**
+	 * Takes the next puzzle, waiting for one to be generated only if none are ready.
+	 * @throws IllegalStateException if the generator can't generate any puzzles.
+	 */
+	public GameState next(){
+		return take(-1);
+	}
+
+	/**
+	 * Takes the next puzzle, waiting at most timeout for one to be generated if none are ready.
+	 * Callers that mustn't block for long, like the event dispatch thread, should use this one.
+	 * @return The puzzle, or null if none was ready in time.
+	 * @throws IllegalStateException if the generator can't generate any puzzles.
+	 */
+	public GameState next(long timeout, TimeUnit unit){
+		return take(Math.max(unit.toNanos(timeout), 0));
+	}
+
+	//waits at most timeoutNanos, or for as long as it takes if that's negative
+	private GameState take(long timeoutNanos){
+		long start = System.nanoTime();
+		GameState puzzle = queue.poll();
+		boolean interrupted = false;
+		while(puzzle == null){
+			RuntimeException failure = this.failure;
+			if(failure != null)
+				throw new IllegalStateException("Puzzle generation failed", failure);
+			long wait = WAIT_NANOS;
+			if(timeoutNanos >= 0){
+				long left = timeoutNanos - (System.nanoTime() - start);
+				if(left <= 0)
+					break;
+				wait = Math.min(wait, left);
+			}
+			try {
+				puzzle = queue.poll(wait, TimeUnit.NANOSECONDS); //rereads queue in case the generator changes
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if(interrupted)
+			Thread.currentThread().interrupt();
+		return puzzle;
+	}
+
+	/**
+	 * @return The number of puzzles ready to be taken without waiting.
+	 */
+	public int ready(){
+		return queue.size();
+	}
+
+	/**
+	 * Discards every queued puzzle and fills the queue from a new generator from now on.
+	 * @param generator Where puzzles come from. Only used by the background thread from now on.
+	 */
+	public void setGenerator(PuzzleGenerator generator){
+		synchronized(this){
+			this.generator = generator;
+			this.queue = new ArrayBlockingQueue<GameState>(capacity);
+			this.failure = null;
+		}
+		worker.interrupt(); //in case it's waiting on the old queue, or about to put an old puzzle in it
+	}
+
+	/**
+	 * Stops the background thread. Puzzles already queued can still be taken.
+	 */
+	public void shutdown(){
+		running = false;
+		worker.interrupt();
+	}
+
+	private void fill(){
+		while(running){
+			PuzzleGenerator generator;
+			BlockingQueue<GameState> queue;
+			synchronized(this){
+				generator = failure == null ? this.generator : null;
+				queue = this.queue;
+			}
+			try {
+				if(generator == null)
+					Thread.sleep(Long.MAX_VALUE); //nothing to do until the generator is replaced
+				else
+					queue.put(generator.next());
+			} catch (InterruptedException e) {
+				//the generator changed or we're shutting down, either way the loop picks it up
+			} catch (RuntimeException e) {
+				synchronized(this){
+					if(this.generator == generator)
+						failure = e;
+				}
+			}
+		}
+	}
+}
@@ -1,77 +1,252 @@
 package solver;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Stack;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
-import back_end.CombineException;
 import back_end.GameState;
 import back_end.Move;
 import back_end.Operation;
 
 public class PuzzleSolver {
-	
+
+	//marks a canonical state in the memo as having no solution
+	private static final List<Step> UNSOLVABLE = Collections.unmodifiableList(new ArrayList<Step>(0));
+
+	private final boolean memoize;
+	private final Map<CanonicalState, List<Step>> memo; //canonical state -> solution line (or UNSOLVABLE)
+	private boolean meetInTheMiddle; //hand puzzles MeetInTheMiddleSolver suits over to it instead of searching
+	private final MagnitudeBound bound = new MagnitudeBound(); //shared by every search, so its cache is too
+
+	private long nodesExpanded;
+	private long cacheHits;
+	private long cacheMisses;
+
+	//during a solve given statistics
+	private SolveStats stats;
+	private int rootPieces; //for working out the depth of memoized positions
+
 	public PuzzleSolver(){
-		
+		this(false);
+	}
+
+	/**
+	 * @param memoize If true, results for every canonical sub-state are cached (and kept between calls to solve),
+	 * 		  so positions reached by different move orders are only searched once.
+	 */
+	public PuzzleSolver(boolean memoize){
+		this.memoize = memoize;
+		this.memo = memoize ? new HashMap<CanonicalState, List<Step>>() : null;
+	}
+
+	/*
+	 * Creates a memoizing solver that caches into the given map, for solvers that share a cache.
+	 * The map must be safe for however many threads use it. Cached lines are never modified once stored.
+	 */
+	PuzzleSolver(Map<CanonicalState, List<Step>> memo){
+		this.memoize = true;
+		this.memo = memo;
 	}
-	
+
+	/**
+	 * Makes solve hand puzzles MeetInTheMiddleSolver suits (large ones with reusable operations) over to it instead of
+	 * searching them. It's much faster on those, but it doesn't use or fill the cache, and expands no nodes, so those
+	 * solves add nothing to the node and cache counters or a SolveStats beyond the solve counts and times.
+	 * Off by default.
+	 */
+	public void setMeetInTheMiddle(boolean meetInTheMiddle){
+		this.meetInTheMiddle = meetInTheMiddle;
+	}
+
 	/**
 	 * Finds a solution for the given game state.
 	 * @param gs The game state to be solved for.
 	 * @return A solution, in the form of a stack of moves. Pop a move off the stack, apply it to the game state,
 	 * 		   and repeat until the stack is empty, and the resulting position will be winning.
 	 * 		   Returns null if the given game state has no solution.
+	 * @see #setMeetInTheMiddle(boolean)
 	 */
 	public Stack<Move> solve(GameState gs){
-		return solveRecurse(gs,null);
-	}
-	
-	private Stack<Move> solveRecurse(GameState gs, Move m){
-		if(gs.getNumPieces() == 1){ //ending position
-			if(gs.pieceAt(0) == gs.getGoal()){ //winning position
-				Stack<Move> result = new Stack<Move>();
-				result.push(m);
-				return result;
+		if(meetInTheMiddle && MeetInTheMiddleSolver.suits(gs))
+			return new MeetInTheMiddleSolver().solve(gs);
+		List<Step> line = memoize ? solveMemo(gs) : searchInPlace(gs);
+		return line == null ? null : Step.toMoves(gs, line);
+	}
+
+	/**
+	 * Finds a solution for the given game state, like solve(gs), and adds what the solve did to stats.
+	 * @param stats The statistics to add to, or null to count nothing (the same as solve(gs)).
+	 */
+	public Stack<Move> solve(GameState gs, SolveStats stats){
+		if(stats == null)
+			return solve(gs);
+		long start = System.nanoTime();
+		Stack<Move> solution;
+		long found;
+		if(meetInTheMiddle && MeetInTheMiddleSolver.suits(gs)){
+			solution = new MeetInTheMiddleSolver().solve(gs);
+			found = System.nanoTime();
+		}
+		else{
+			List<Step> line;
+			this.stats = stats;
+			rootPieces = gs.getNumPieces();
+			try{
+				line = memoize ? solveMemo(gs) : searchInPlace(gs);
 			}
-			else{ //losing position
-				return null;
+			finally{
+				this.stats = null; //so a solve that throws doesn't leave later solves counting into stats
 			}
+			found = System.nanoTime();
+			solution = line == null ? null : Step.toMoves(gs, line);
+		}
+		stats.countSolve(solution == null ? -1 : found - start, System.nanoTime() - start);
+		return solution;
+	}
+
+	/**
+	 * Lazily enumerates every distinct solution for the given game state (see SolutionSpliterator for which solutions
+	 * count as distinct). Solutions are only searched for as the stream is consumed, and the stream can be made parallel.
+	 * @param gs The game state to be solved for.
+	 * @return A stream of solutions, each in the same form solve returns.
+	 */
+	public Stream<Stack<Move>> solutions(GameState gs){
+		return StreamSupport.stream(new SolutionSpliterator(gs), false);
+	}
+
+	public long getNodesExpanded(){
+		return nodesExpanded;
+	}
+
+	public long getCacheHits(){
+		return cacheHits;
+	}
+
+	public long getCacheMisses(){
+		return cacheMisses;
+	}
+
+	public int getCacheSize(){
+		return memoize ? memo.size() : 0;
+	}
+
+	/**
+	 * Resets the node and cache counters. Cached results are kept.
+	 */
+	public void resetStatistics(){
+		nodesExpanded = 0;
+		cacheHits = 0;
+		cacheMisses = 0;
+	}
+
+	public void clearCache(){
+		if(memoize)
+			memo.clear();
+	}
+
+	private List<Step> searchInPlace(GameState gs){
+		InPlaceSearch search = new InPlaceSearch(gs, bound);
+		search.setStats(stats);
+		boolean solved = search.run();
+		nodesExpanded += search.getNodes();
+		return solved ? search.line() : null;
+	}
+
+	/*
+	 * Memoizing search. Returns the winning line from gs in terms of piece values,
+	 * or null if gs has no solution.
+	 */
+	private List<Step> solveMemo(GameState gs){
+		nodesExpanded++;
+		if(stats != null)
+			stats.countNode(rootPieces - gs.getNumPieces());
+		if(gs.getNumPieces() == 1) //ending position, cheaper to check than to look up
+			return gs.pieceAt(0) == gs.getGoal() ? new ArrayList<Step>() : null;
+
+		CanonicalState key = CanonicalState.of(gs);
+		List<Step> cached = memo.get(key);
+		if(cached != null){
+			cacheHits++;
+			if(stats != null)
+				stats.countCacheHit();
+			return cached == UNSOLVABLE ? null : cached;
 		}
-		
-		//recurse with the result of each legal move from this position
+		cacheMisses++;
+		if(stats != null)
+			stats.countCacheMiss();
+
+		//pairs are tried in order of value, so each pair of values is only tried once
+		int order[] = indicesByValue(gs);
 		Operation op;
-		Move next;
-		Stack<Move> path = null;
-		for(int i=0; i<gs.getNumPieces(); i++){
-			for(int j=i+1; j<gs.getNumPieces(); j++){
+		List<Step> line;
+		for(int a=0; a<order.length; a++){
+			if(a > 0 && gs.pieceAt(order[a]) == gs.pieceAt(order[a-1]))
+				continue;
+			for(int b=a+1; b<order.length; b++){
+				if(b > a+1 && gs.pieceAt(order[b]) == gs.pieceAt(order[b-1]))
+					continue;
+				int i = order[a];
+				int j = order[b];
 				for(int k=0; k<gs.getNumOps(); k++){
 					op = gs.opAt(k);
-					next = new Move(i,j,k);
-					try {
-						path = solveRecurse(gs.afterCombine(next), next);
-					} catch (CombineException e) {
-						path = null;
-					}
-					if(path != null){
-						if(m != null)
-							path.push(m);
-						return path;
-					}
-					if(op.isCommutative){
-						next = new Move(j,i,k);
-						try {
-							path = solveRecurse(gs.afterCombine(next), next);
-						} catch (CombineException e) {
-							path = null;
-						}
-						if(path != null){
-							if(m != null)
-								path.push(m);
-							return path;
-						}
+					if(hasEarlierOfKind(gs, k)) //an equal op was already tried, and leaves the same position
+						continue;
+					line = tryMemo(gs, i, j, k);
+					if(line == null && !op.isCommutative && gs.pieceAt(i) != gs.pieceAt(j))
+						line = tryMemo(gs, j, i, k);
+					if(line != null){
+						memo.put(key, line);
+						return line;
 					}
 				}
 			}
 		}
+		memo.put(key, UNSOLVABLE);
 		return null;
 	}
-	
+
+	private List<Step> tryMemo(GameState gs, int firstIndex, int secondIndex, int opIndex){
+		GameState next = gs.tryAfterCombine(firstIndex, secondIndex, opIndex);
+		if(next == null){
+			if(stats != null) //worked out again, as tryAfterCombine doesn't say what was wrong
+				stats.countIllegal(gs.opAt(opIndex), gs.opAt(opIndex).evaluate(gs.pieceAt(firstIndex),
+						gs.pieceAt(secondIndex), gs.getBounds()));
+			return null;
+		}
+		List<Step> rest = solveMemo(next);
+		if(rest == null)
+			return null;
+		List<Step> line = new ArrayList<Step>(rest.size()+1);
+		line.add(new Step(gs.pieceAt(firstIndex), gs.pieceAt(secondIndex), gs.opAt(opIndex)));
+		line.addAll(rest);
+		return line;
+	}
+
+	private static boolean hasEarlierOfKind(GameState gs, int opIndex){
+		for(int k=0; k<opIndex; k++){
+			if(gs.opAt(k).kind == gs.opAt(opIndex).kind)
+				return true;
+		}
+		return false;
+	}
+
+	//returns the indices of gs's pieces, ordered by piece value
+	private static int[] indicesByValue(GameState gs){
+		int order[] = new int[gs.getNumPieces()];
+		for(int i=0; i<order.length; i++){
+			int j = i;
+			while(j > 0 && gs.pieceAt(order[j-1]) > gs.pieceAt(i)){
+				order[j] = order[j-1];
+				j--;
+			}
+			order[j] = i;
+		}
+		return order;
+	}
+
 }
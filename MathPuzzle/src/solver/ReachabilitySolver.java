@@ -0,0 +1,204 @@
+package solver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Stack;
+
+import back_end.Bounds;
+import back_end.GameState;
+import back_end.Move;
+import back_end.Operation;
+
+/**
+ * Solver that works out every value reachable from a set of pieces at once, instead of searching for one goal.
+ *
+ * Every intermediate value is within the puzzle's bounds, so the values reachable from any subset of the pieces fit
+ * in a bitset sized from them (small for the default bounds). The bitset for a subset is built by combining the
+ * bitsets of each way of splitting it in two, so one pass answers "is G reachable" for every goal G.
+ * Only supports game states with reusable operations, and whose bitsets fit in MAX_TABLE_BITS between them: every
+ * default puzzle does, but wide piece ranges with many pieces don't.
+ *
+ * @author Kelton Finch
+ */
+public class ReachabilitySolver {
+
+	//the most bits the bitsets of every subset can add up to (256MB)
+	public static final long MAX_TABLE_BITS = 1L << 31;
+
+	public ReachabilitySolver(){
+
+	}
+
+	/**
+	 * @return True if gs's operations are reusable and a bitset for every subset of its pieces fits in MAX_TABLE_BITS.
+	 */
+	public static boolean supports(GameState gs){
+		return gs.isOpsReusable() && tableBits(gs) <= MAX_TABLE_BITS;
+	}
+
+	private static long tableBits(GameState gs){
+		Bounds bounds = gs.getBounds();
+		return ((long) bounds.maxPieceSize - bounds.minPieceSize + 1) << gs.getNumPieces();
+	}
+
+	/**
+	 * Finds a solution for the given game state, with the same contract as PuzzleSolver.solve.
+	 * @param gs The game state to be solved for. See supports.
+	 * @return A solution as a stack of moves (first move on top), or null if the game state has no solution.
+	 * @throws IllegalArgumentException if the game state isn't supported.
+	 */
+	public Stack<Move> solve(GameState gs){
+		return analyze(gs).solution(gs.getGoal());
+	}
+
+	/**
+	 * Computes the set of values reachable by combining all of the given game state's pieces.
+	 * The goal of the game state is ignored.
+	 * @param gs The game state to be analyzed. See supports.
+	 * @return The reachable values, which can also produce a solution for each of them.
+	 * @throws IllegalArgumentException if the game state isn't supported.
+	 */
+	public Reachability analyze(GameState gs){
+		if(!gs.isOpsReusable())
+			throw new IllegalArgumentException("ReachabilitySolver requires reusable operations");
+		if(tableBits(gs) > MAX_TABLE_BITS)
+			throw new IllegalArgumentException("ReachabilitySolver can't hold every value within " + gs.getBounds()
+					+ " for every subset of " + gs.getNumPieces() + " pieces");
+
+		int n = gs.getNumPieces();
+		Bounds bounds = gs.getBounds();
+		int numValues = bounds.maxPieceSize - bounds.minPieceSize + 1;
+		Operation opList[] = Arrays.copyOf(gs.getOps(), gs.getNumOps());
+		BitSet reach[] = new BitSet[1 << n];
+		int values[] = new int[n];
+
+		//subsets holding the same multiset of values reach the same values, so each multiset is only computed once
+		Map<String, BitSet> byMultiset = new HashMap<String, BitSet>();
+
+		for(int mask=1; mask<reach.length; mask++){
+			int size = 0;
+			for(int i=0; i<n; i++){
+				if((mask & (1 << i)) != 0)
+					values[size++] = gs.pieceAt(i);
+			}
+			int sorted[] = Arrays.copyOf(values, size);
+			Arrays.sort(sorted);
+			String key = Arrays.toString(sorted);
+			BitSet known = byMultiset.get(key);
+			if(known != null){
+				reach[mask] = known;
+				continue;
+			}
+
+			BitSet bits = new BitSet(numValues);
+			if(size == 1){
+				bits.set(sorted[0] - bounds.minPieceSize);
+			}
+			else{
+				for(int s=(mask-1) & mask; s>0; s=(s-1) & mask){
+					int t = mask ^ s;
+					for(int k=0; k<opList.length; k++){
+						if(opList[k].isCommutative && s > t) //other operand order covers it
+							continue;
+						combineInto(bits, reach[s], reach[t], opList[k], bounds);
+					}
+				}
+			}
+			reach[mask] = bits;
+			byMultiset.put(key, bits);
+		}
+		return new Reachability(gs, opList, reach);
+	}
+
+	//bit index of a value is value - bounds.minPieceSize
+	private static void combineInto(BitSet result, BitSet firstValues, BitSet secondValues, Operation op, Bounds bounds){
+		int offset = -bounds.minPieceSize;
+		for(int a=firstValues.nextSetBit(0); a>=0; a=firstValues.nextSetBit(a+1)){
+			for(int b=secondValues.nextSetBit(0); b>=0; b=secondValues.nextSetBit(b+1)){
+				int value = op.evaluate(a - offset, b - offset, bounds);
+				if(Operation.isValid(value))
+					result.set(value + offset);
+			}
+		}
+	}
+
+	/**
+	 * The values reachable from the pieces of one game state, as computed by ReachabilitySolver.analyze.
+	 */
+	public static class Reachability {
+
+		private final GameState gs;
+		private final Operation ops[];
+		private final BitSet reach[]; //values reachable from each subset (bitmask over piece indices) of the pieces
+		private final Bounds bounds;
+		private final int offset; //bit index of a value is value + offset
+
+		private Reachability(GameState gs, Operation ops[], BitSet reach[]){
+			this.gs = new GameState(gs);
+			this.ops = ops;
+			this.reach = reach;
+			this.bounds = gs.getBounds();
+			this.offset = -bounds.minPieceSize;
+		}
+
+		public boolean isReachable(int value){
+			if(!bounds.contains(value))
+				return false;
+			return reach[reach.length-1].get(value + offset);
+		}
+
+		/**
+		 * @param minGoal The lowest goal to check (inclusive)
+		 * @param maxGoal The highest goal to check (exclusive)
+		 * @return The number of goals in the given range that can be reached.
+		 */
+		public int countReachable(int minGoal, int maxGoal){
+			int count = 0;
+			for(int goal=minGoal; goal<maxGoal; goal++){
+				if(isReachable(goal))
+					count++;
+			}
+			return count;
+		}
+
+		/**
+		 * Builds a solution reaching the given value.
+		 * @param goal The value to be reached.
+		 * @return A solution as a stack of moves (first move on top) for the analyzed pieces, or null if goal isn't reachable.
+		 */
+		public Stack<Move> solution(int goal){
+			if(!isReachable(goal))
+				return null;
+			List<Step> steps = new ArrayList<Step>();
+			witness(reach.length-1, goal, steps);
+			return Step.toMoves(gs, steps);
+		}
+
+		/*
+		 * Appends steps that combine the pieces in mask into value. value must be reachable from mask.
+		 */
+		private void witness(int mask, int value, List<Step> steps){
+			if(Integer.bitCount(mask) == 1)
+				return;
+			for(int s=(mask-1) & mask; s>0; s=(s-1) & mask){
+				int t = mask ^ s;
+				for(Operation op : ops){
+					for(int a=reach[s].nextSetBit(0); a>=0; a=reach[s].nextSetBit(a+1)){
+						for(int b=reach[t].nextSetBit(0); b>=0; b=reach[t].nextSetBit(b+1)){
+							if(op.evaluate(a - offset, b - offset, bounds) == value){
+								witness(s, a - offset, steps);
+								witness(t, b - offset, steps);
+								steps.add(new Step(a - offset, b - offset, op));
+								return;
+							}
+						}
+					}
+				}
+			}
+		}
+	}
+}
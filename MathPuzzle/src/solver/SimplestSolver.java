@@ -0,0 +1,341 @@
+package solver;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Stack;
+
+import back_end.Bounds;
+import back_end.GameState;
+import back_end.Move;
+import back_end.Operation;
+
+/**
+ * Finds the cheapest solution of a game state under a CostModel, rather than the first one a depth-first search runs into.
+ *
+ * The search is iterative deepening A* on solution cost. Each pass is an in-place depth-first search that gives up on
+ * any line whose cost so far, plus the cheapest the remaining moves could possibly be, is over the pass's budget; the
+ * next pass raises the budget to the smallest total that was given up on. The first solution found is therefore a
+ * cheapest one. Positions with two pieces left are finished exactly instead of searched. Each pass also records, per
+ * canonical position, how much it was shown the rest of the solution must cost at least, so later passes skip
+ * positions that can't fit their budget without searching them again. Those bounds hold for any puzzle, so they are
+ * kept between calls to solve.
+ *
+ * @author Kelton Finch
+ */
+public class SimplestSolver {
+
+	private static final int NO_SOLUTION = Integer.MAX_VALUE;
+
+	private final CostModel costModel;
+
+	//the position being searched, kept in place in one int buffer (swap-remove, undone after each move)
+	private int pieces[];
+	private int numPieces;
+	private OpCounts counts;
+	private Operation ops[]; //one of each kind
+	private int opsAvailable; //an OpCounts mask
+	private boolean opsReusable;
+	private int goal;
+	private Bounds bounds;
+	private Operation availableOps[]; //scratch for building canonical keys
+
+	//the move made at each depth of the current line
+	private int lineFirst[];
+	private int lineSecond[];
+	private int lineOp[];
+	private int lineLength;
+	private int lastMoveOp; //the move found by the last call to cheapestLastMove
+	private boolean lastMoveReversed;
+
+	private int budget;
+	private int nextBudget; //smallest total cost over budget seen in the current pass
+	private final Map<CanonicalState, Integer> lowerBounds; //canonical position -> least cost of finishing it from there
+
+	private int solutionCost = -1;
+	private long nodesExpanded;
+	private int passes;
+
+	public SimplestSolver(){
+		this(new DefaultCostModel());
+	}
+
+	/**
+	 * @param costModel The cost model solutions are priced with. What the solver learns about the cost of finishing
+	 * 		  each position is kept between calls to solve, so the model must always price a move the same way.
+	 */
+	public SimplestSolver(CostModel costModel){
+		this.costModel = costModel;
+		this.lowerBounds = new HashMap<CanonicalState, Integer>();
+	}
+
+	/**
+	 * Finds a cheapest solution for the given game state.
+	 * @param gs The game state to be solved for.
+	 * @return A solution in the same form PuzzleSolver.solve returns, or null if the game state has no solution.
+	 */
+	public Stack<Move> solve(GameState gs){
+		load(gs);
+		solutionCost = -1;
+		budget = lowerBound();
+		while(budget != NO_SOLUTION){
+			passes++;
+			nextBudget = NO_SOLUTION;
+			if(search(0, 0)){
+				solutionCost = budget;
+				List<Step> line = new ArrayList<Step>(lineLength);
+				for(int d=0; d<lineLength; d++)
+					line.add(new Step(lineFirst[d], lineSecond[d], ops[lineOp[d]]));
+				return Step.toMoves(gs, line);
+			}
+			budget = nextBudget;
+		}
+		return null;
+	}
+
+	/**
+	 * @return The cost of the solution found by the last call to solve, or -1 if it found none.
+	 */
+	public int getSolutionCost(){
+		return solutionCost;
+	}
+
+	public CostModel getCostModel(){
+		return costModel;
+	}
+
+	public long getNodesExpanded(){
+		return nodesExpanded;
+	}
+
+	/**
+	 * @return The number of search passes made, each with a larger cost budget than the last.
+	 */
+	public int getPasses(){
+		return passes;
+	}
+
+	public int getCacheSize(){
+		return lowerBounds.size();
+	}
+
+	/**
+	 * Resets the node and pass counters. Cached bounds are kept.
+	 */
+	public void resetStatistics(){
+		nodesExpanded = 0;
+		passes = 0;
+	}
+
+	public void clearCache(){
+		lowerBounds.clear();
+	}
+
+	private void load(GameState gs){
+		numPieces = gs.getNumPieces();
+		pieces = new int[numPieces];
+		for(int i=0; i<numPieces; i++)
+			pieces[i] = gs.pieceAt(i);
+		counts = new OpCounts(gs);
+		ops = counts.kinds;
+		availableOps = new Operation[gs.getNumOps()];
+		opsAvailable = counts.all;
+		opsReusable = gs.isOpsReusable();
+		goal = gs.getGoal();
+		bounds = gs.getBounds();
+
+		lineFirst = new int[Math.max(numPieces-1, 0)];
+		lineSecond = new int[lineFirst.length];
+		lineOp = new int[lineFirst.length];
+	}
+
+	//the least the remaining moves can cost, ignoring whether they can reach the goal
+	private int lowerBound(){
+		if(numPieces == 1)
+			return pieces[0] == goal ? 0 : NO_SOLUTION;
+		return (numPieces-1) * costModel.minimumCost();
+	}
+
+	/*
+	 * Searches the current position, given the cost of the line leading to it.
+	 * Returns true if it can be finished within budget, with the line up to the win left in the line arrays.
+	 */
+	private boolean search(int depth, int cost){
+		nodesExpanded++;
+		if(numPieces == 1){
+			if(pieces[0] != goal)
+				return false;
+			lineLength = depth;
+			return true;
+		}
+		if(numPieces == 2)
+			return finish(depth, cost);
+
+		CanonicalState key = canonicalKey();
+		Integer known = lowerBounds.get(key);
+		if(known == null && numPieces == 3){
+			//three piece positions are cheap enough to price exactly, so later passes never search them in vain
+			known = cheapestFinish();
+			lowerBounds.put(key, known);
+		}
+		int bound = known == null ? lowerBound() : Math.max(lowerBound(), known);
+		if(bound == NO_SOLUTION)
+			return false;
+		if(cost + bound > budget){
+			nextBudget = Math.min(nextBudget, cost + bound);
+			return false;
+		}
+
+		int outerNextBudget = nextBudget;
+		nextBudget = NO_SOLUTION;
+		for(int i=0; i<numPieces; i++){
+			for(int j=i+1; j<numPieces; j++){
+				for(int k=0; k<ops.length; k++){
+					if(!counts.has(opsAvailable, k))
+						continue;
+					if(tryMove(depth, cost, i, j, k, pieces[i], pieces[j])
+							|| (!ops[k].isCommutative && tryMove(depth, cost, i, j, k, pieces[j], pieces[i]))){
+						nextBudget = Math.min(outerNextBudget, nextBudget);
+						return true;
+					}
+				}
+			}
+		}
+		//nothing finished within budget, so finishing from here costs at least what the cheapest failure needed
+		lowerBounds.put(key, nextBudget == NO_SOLUTION ? NO_SOLUTION : nextBudget - cost);
+		nextBudget = Math.min(outerNextBudget, nextBudget);
+		return false;
+	}
+
+	/*
+	 * Combines the pieces in slots i and j (i < j) into slot i, searches the resulting position, then undoes the move.
+	 */
+	private boolean tryMove(int depth, int cost, int i, int j, int k, int first, int second){
+		int result = ops[k].evaluate(first, second, bounds);
+		if(!Operation.isValid(result))
+			return false;
+		int moveCost = costModel.cost(ops[k], first, second, result);
+
+		int a = pieces[i];
+		int b = pieces[j];
+		int last = pieces[numPieces-1];
+		int opsBefore = opsAvailable;
+
+		pieces[i] = result;
+		pieces[j] = last;
+		numPieces--;
+		opsAvailable = counts.use(opsAvailable, k);
+		lineFirst[depth] = first;
+		lineSecond[depth] = second;
+		lineOp[depth] = k;
+
+		boolean found = search(depth+1, cost + moveCost);
+
+		numPieces++;
+		pieces[numPieces-1] = last;
+		pieces[j] = b;
+		pieces[i] = a;
+		opsAvailable = opsBefore;
+		return found;
+	}
+
+	/*
+	 * Finishes a two piece position with its cheapest winning move, if that fits the budget.
+	 */
+	private boolean finish(int depth, int cost){
+		int best = cheapestLastMove();
+		if(best == NO_SOLUTION)
+			return false;
+		if(cost + best > budget){
+			nextBudget = Math.min(nextBudget, cost + best);
+			return false;
+		}
+		lineFirst[depth] = pieces[lastMoveReversed ? 1 : 0];
+		lineSecond[depth] = pieces[lastMoveReversed ? 0 : 1];
+		lineOp[depth] = lastMoveOp;
+		lineLength = depth+1;
+		return true;
+	}
+
+	/*
+	 * Returns the exact cost of finishing a three piece position, or NO_SOLUTION.
+	 */
+	private int cheapestFinish(){
+		int best = NO_SOLUTION;
+		for(int i=0; i<numPieces; i++){
+			for(int j=i+1; j<numPieces; j++){
+				for(int k=0; k<ops.length; k++){
+					if(!counts.has(opsAvailable, k))
+						continue;
+					best = Math.min(best, finishCost(i, j, k, pieces[i], pieces[j], best));
+					if(!ops[k].isCommutative)
+						best = Math.min(best, finishCost(i, j, k, pieces[j], pieces[i], best));
+				}
+			}
+		}
+		return best;
+	}
+
+	//cost of finishing with the given move first, or NO_SOLUTION if that can't win for less than best
+	private int finishCost(int i, int j, int k, int first, int second, int best){
+		int result = ops[k].evaluate(first, second, bounds);
+		if(!Operation.isValid(result))
+			return NO_SOLUTION;
+		int moveCost = costModel.cost(ops[k], first, second, result);
+		if(best != NO_SOLUTION && moveCost + costModel.minimumCost() >= best)
+			return NO_SOLUTION;
+
+		int a = pieces[i];
+		int b = pieces[j];
+		int last = pieces[numPieces-1];
+		int opsBefore = opsAvailable;
+		pieces[i] = result;
+		pieces[j] = last;
+		numPieces--;
+		opsAvailable = counts.use(opsAvailable, k);
+
+		int rest = cheapestLastMove();
+
+		numPieces++;
+		pieces[numPieces-1] = last;
+		pieces[j] = b;
+		pieces[i] = a;
+		opsAvailable = opsBefore;
+		return rest == NO_SOLUTION ? NO_SOLUTION : rest + moveCost;
+	}
+
+	/*
+	 * Returns the cost of the cheapest move that wins a two piece position, or NO_SOLUTION if there is none.
+	 * The move is left in lastMoveOp and lastMoveReversed.
+	 */
+	private int cheapestLastMove(){
+		int best = NO_SOLUTION;
+		for(int k=0; k<ops.length; k++){
+			if(!counts.has(opsAvailable, k))
+				continue;
+			for(int r=0; r<2; r++){
+				if(r == 1 && ops[k].isCommutative)
+					break;
+				int first = pieces[r];
+				int second = pieces[1-r];
+				int moveCost = costModel.cost(ops[k], first, second, goal); //priced before checking, to skip moves that can't be cheaper
+				if(moveCost >= best || ops[k].evaluate(first, second, bounds) != goal)
+					continue;
+				best = moveCost;
+				lastMoveOp = k;
+				lastMoveReversed = r == 1;
+			}
+		}
+		return best;
+	}
+
+	private CanonicalState canonicalKey(){
+		int numAvailable = 0;
+		for(int k=0; k<ops.length; k++){
+			for(int c=counts.count(opsAvailable, k); c>0; c--)
+				availableOps[numAvailable++] = ops[k];
+		}
+		return CanonicalState.of(pieces, numPieces, availableOps, numAvailable, goal, opsReusable, bounds);
+	}
+}
@@ -0,0 +1,412 @@
+package solver;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import back_end.GameState;
+import back_end.Operation;
+
+/**
+ * Counts the distinct solutions of a game state without enumerating them.
+ *
+ * Solutions are counted as distinct expression trees over the piece values, the same way SolutionSpliterator tells
+ * them apart: operand order only matters for non-commutative operations, independent moves may be made in any order,
+ * and equal pieces are interchangeable. The number of trees over a multiset of values that produce each value is
+ * memoized per canonical sub-multiset and shared between every subset (and every puzzle) that has the same values. A
+ * puzzle's count combines the counts of every way of splitting its values into two sub-multisets. Each tree splits its
+ * values in exactly one way, so a split counts once however many ways the pieces themselves split into it.
+ *
+ * Operations are taken one per kind (see OpCounts), so copies of an operation never count as different trees. Game
+ * states with non-reusable operations fall back to consuming a SolutionSpliterator, which branches on kinds the same
+ * way. Otherwise the counts are kept per value of the default piece range, so only puzzles with the default range are
+ * supported.
+ *
+ * @author Kelton Finch
+ */
+public class SolutionCounter {
+
+	private static final int OFFSET = -Operation.MIN_PIECE_SIZE; //dense index of a value is value + OFFSET
+	private static final int NUM_VALUES = Operation.MAX_PIECE_SIZE - Operation.MIN_PIECE_SIZE + 1;
+	private static final int LINEAR_SCAN_SIZE = 16; //sub-counts with at most this many values are scanned, not searched
+
+	private final Map<CanonicalState, SubCounts> memo;
+	private final long scratch[]; //dense counts per value, reused while building each SubCounts
+
+	private long cacheHits;
+	private long cacheMisses;
+
+	public SolutionCounter(){
+		memo = new HashMap<CanonicalState, SubCounts>();
+		scratch = new long[NUM_VALUES];
+	}
+
+	/**
+	 * @param gs The game state whose solutions are counted.
+	 * @return The exact number of distinct solutions.
+	 */
+	public long count(GameState gs){
+		return count(gs, Long.MAX_VALUE);
+	}
+
+	/**
+	 * @param gs The game state whose solutions are counted.
+	 * @param cap Counting stops as soon as this many solutions are known.
+	 * @return The number of distinct solutions, or cap if there are at least that many.
+	 * @throws IllegalArgumentException if gs has reusable operations and pieces outside the default range.
+	 */
+	public long count(GameState gs, long cap){
+		if(!gs.isOpsReusable()){
+			long count = 0;
+			SolutionSpliterator solutions = new SolutionSpliterator(gs);
+			while(count < cap && solutions.tryAdvance(s -> { }))
+				count++;
+			return count;
+		}
+		if(!gs.getBounds().hasDefaultPieceSizes())
+			throw new IllegalArgumentException("SolutionCounter only counts within the default piece range");
+
+		int n = gs.getNumPieces();
+		Operation ops[] = new OpCounts(gs).kinds; //reusable, so one of each kind is all there is
+		int pieces[] = new int[n];
+		for(int i=0; i<n; i++)
+			pieces[i] = gs.pieceAt(i);
+
+		int full = (1 << n) - 1;
+		if(n == 1)
+			return pieces[0] == gs.getGoal() ? Math.min(1, cap) : 0;
+
+		//only the goal matters for the whole set, so it is counted directly instead of through a SubCounts
+		int goal = gs.getGoal();
+		if(goal < Operation.MIN_PIECE_SIZE || goal > Operation.MAX_PIECE_SIZE)
+			return 0;
+		long count = 0;
+		Splits splits = splits(pieces, full, ops);
+		for(int p=0; p<splits.size; p++){
+			SubCounts first = splits.first[p];
+			SubCounts second = splits.second[p];
+			for(int k=0; k<ops.length; k++){
+				if(!ops[k].isCommutative)
+					count += countReaching(first, second, ops[k], goal);
+				else if(first == second)
+					count += countReachingUnordered(first, ops[k], goal);
+				else if(!splits.mirrored[p])
+					count += countReaching(first, second, ops[k], goal);
+				if(count >= cap)
+					return cap;
+			}
+		}
+		return count;
+	}
+
+	public long getCacheHits(){
+		return cacheHits;
+	}
+
+	public long getCacheMisses(){
+		return cacheMisses;
+	}
+
+	public void clearCache(){
+		memo.clear();
+	}
+
+	/*
+	 * Returns the number of trees producing each value from the pieces selected by mask.
+	 */
+	private SubCounts subCounts(int pieces[], int mask, Operation ops[]){
+		int size = Integer.bitCount(mask);
+		int values[] = new int[size];
+		int v = 0;
+		for(int i=0; i<pieces.length; i++){
+			if((mask & (1 << i)) != 0)
+				values[v++] = pieces[i];
+		}
+		CanonicalState key = CanonicalState.of(values, size, ops, ops.length, CanonicalState.ANY_GOAL, true);
+		SubCounts cached = memo.get(key);
+		if(cached != null){
+			cacheHits++;
+			return cached;
+		}
+		cacheMisses++;
+
+		SubCounts result;
+		if(size == 1){
+			result = new SubCounts(new int[]{values[0]}, new long[]{1});
+		}
+		else{
+			//the splits are gathered before scratch is filled, since computing their sub-counts uses it too
+			Splits splits = splits(pieces, mask, ops);
+			for(int p=0; p<splits.size; p++){
+				SubCounts first = splits.first[p];
+				SubCounts second = splits.second[p];
+				for(int k=0; k<ops.length; k++){
+					boolean commutative = ops[k].isCommutative;
+					if(commutative && splits.mirrored[p])
+						continue;
+					boolean sameSide = commutative && first == second; //unordered pairs of trees from one side
+					for(int a=0; a<first.values.length; a++){
+						int end = second.upperIndex(maxSecond(ops[k], first.values[a]));
+						int b = second.lowerIndex(minSecond(ops[k], first.values[a]));
+						if(sameSide && b <= a){
+							int r = ops[k].evaluate(first.values[a], first.values[a]);
+							long c = first.counts[a];
+							if(Operation.isValid(r))
+								scratch[r + OFFSET] += c * (c+1) / 2; //either tree may be used twice
+							b = a+1;
+						}
+						for(; b<end; b++){
+							int r = ops[k].evaluate(first.values[a], second.values[b]);
+							if(Operation.isValid(r))
+								scratch[r + OFFSET] += first.counts[a] * second.counts[b];
+						}
+					}
+				}
+			}
+			result = SubCounts.fromDense(scratch);
+		}
+		memo.put(key, result);
+		return result;
+	}
+
+	/*
+	 * Groups the ways of splitting mask in two by the sub-multisets on each side, since splits with the same values
+	 * on each side build the same trees.
+	 */
+	private Splits splits(int pieces[], int mask, Operation ops[]){
+		Splits result = new Splits((1 << Integer.bitCount(mask)) - 2);
+		for(int s=(mask-1) & mask; s>0; s=(s-1) & mask)
+			result.add(subCounts(pieces, s, ops), subCounts(pieces, mask ^ s, ops));
+		return result;
+	}
+
+	/*
+	 * Number of pairs of trees, one from each side, that the given operation combines into goal.
+	 */
+	private static long countReaching(SubCounts first, SubCounts second, Operation op, int goal){
+		if(first.values.length > second.values.length){
+			switch(op.opCode){ //these can also be inverted for the first operand, so walk the smaller side instead
+			case Operation.PLUS:
+			case Operation.MINUS:
+			case Operation.TIMES:
+			case Operation.DIVIDE:
+				return countReachingBySecond(first, second, op, goal);
+			}
+		}
+
+		long count = 0;
+		for(int a=0; a<first.values.length; a++){
+			int value = first.values[a];
+			int needed;
+			switch(op.opCode){
+			case Operation.PLUS:
+				needed = goal - value;
+				break;
+			case Operation.MINUS:
+				needed = value - goal;
+				break;
+			case Operation.TIMES:
+				if(value == 0){
+					count += goal == 0 ? first.counts[a] * second.total : 0;
+					continue;
+				}
+				if(goal % value != 0)
+					continue;
+				needed = goal / value;
+				break;
+			case Operation.DIVIDE:
+				if(value == 0 || goal == 0){ //0 divided by anything else is 0, and nothing else divides to 0
+					if(value == 0 && goal == 0)
+						count += first.counts[a] * (second.total - second.countOf(0));
+					continue;
+				}
+				if(value % goal != 0)
+					continue;
+				needed = value / goal;
+				break;
+			default: //no cheap inverse, try every second operand that could give a legal result
+				int min = minSecond(op, value);
+				if(op.opCode == Operation.EXPONENT && goal != 0 && Math.abs(value) >= 2)
+					min = 0; //negative powers of anything but -1, 0 and 1 have magnitude below 1
+				int end = second.upperIndex(maxSecond(op, value));
+				for(int b=second.lowerIndex(min); b<end; b++){
+					if(op.evaluate(value, second.values[b]) == goal)
+						count += first.counts[a] * second.counts[b];
+				}
+				continue;
+			}
+			count += first.counts[a] * second.countOf(needed);
+		}
+		return count;
+	}
+
+	/*
+	 * Number of unordered pairs of trees from one side, possibly the same tree twice, that the given commutative
+	 * operation combines into goal. Ordered pairs count every pair of different trees twice and every tree paired with
+	 * itself once.
+	 */
+	private static long countReachingUnordered(SubCounts side, Operation op, int goal){
+		long pairs = countReaching(side, side, op, goal);
+		for(int a=0; a<side.values.length; a++){
+			if(op.evaluate(side.values[a], side.values[a]) == goal)
+				pairs += side.counts[a];
+		}
+		return pairs / 2;
+	}
+
+	/*
+	 * Same as countReaching for PLUS, MINUS, TIMES and DIVIDE, but walks the second operands.
+	 */
+	private static long countReachingBySecond(SubCounts first, SubCounts second, Operation op, int goal){
+		long count = 0;
+		for(int b=0; b<second.values.length; b++){
+			int value = second.values[b];
+			int needed;
+			switch(op.opCode){
+			case Operation.PLUS:
+				needed = goal - value;
+				break;
+			case Operation.MINUS:
+				needed = goal + value;
+				break;
+			case Operation.TIMES:
+				if(value == 0){
+					count += goal == 0 ? first.total * second.counts[b] : 0;
+					continue;
+				}
+				if(goal % value != 0)
+					continue;
+				needed = goal / value;
+				break;
+			default: //DIVIDE
+				if(value == 0)
+					continue;
+				needed = goal * value;
+				break;
+			}
+			count += first.countOf(needed) * second.counts[b];
+		}
+		return count;
+	}
+
+	/*
+	 * Bounds on the second operands that can give a legal result with the given first operand. They only narrow the
+	 * search, every candidate is still checked with Operation.evaluate.
+	 */
+	private static int minSecond(Operation op, int first){
+		switch(op.opCode){
+		case Operation.PLUS:   return Operation.MIN_PIECE_SIZE - first;
+		case Operation.MINUS:  return first - Operation.MAX_PIECE_SIZE;
+		case Operation.TIMES:  return first == 0 ? Integer.MIN_VALUE : -(Operation.MAX_PIECE_SIZE / Math.abs(first));
+		case Operation.DIVIDE: return first == 0 ? Integer.MIN_VALUE : -Math.abs(first); //exact quotients need |second| <= |first|
+		default:               return op.minOperand;
+		}
+	}
+
+	private static int maxSecond(Operation op, int first){
+		switch(op.opCode){
+		case Operation.PLUS:     return Operation.MAX_PIECE_SIZE - first;
+		case Operation.MINUS:    return first - Operation.MIN_PIECE_SIZE;
+		case Operation.TIMES:    return first == 0 ? Integer.MAX_VALUE : Operation.MAX_PIECE_SIZE / Math.abs(first);
+		case Operation.DIVIDE:   return first == 0 ? Integer.MAX_VALUE : Math.abs(first);
+		case Operation.EXPONENT: return Math.abs(first) < 2 ? Integer.MAX_VALUE : 10; //2^10 is already too large
+		default:                 return op.maxOperand;
+		}
+	}
+
+	/*
+	 * Distinct (first side, second side) pairs of sub-multisets. A pair whose sides differ also turns up the other way
+	 * round, and that one is marked mirrored so that commutative operations count each unordered split once.
+	 */
+	private static class Splits {
+		final SubCounts first[];
+		final SubCounts second[];
+		final boolean mirrored[];
+		int size;
+
+		Splits(int capacity){
+			first = new SubCounts[capacity];
+			second = new SubCounts[capacity];
+			mirrored = new boolean[capacity];
+		}
+
+		void add(SubCounts a, SubCounts b){
+			boolean mirror = false;
+			for(int p=0; p<size; p++){ //memoized sub-counts are shared, so identity is enough
+				if(first[p] == a && second[p] == b)
+					return;
+				if(first[p] == b && second[p] == a)
+					mirror = true;
+			}
+			first[size] = a;
+			second[size] = b;
+			mirrored[size++] = mirror;
+		}
+	}
+
+	/*
+	 * Sparse map from value to number of trees reaching it. Values are in increasing order.
+	 */
+	private static class SubCounts {
+		final int values[];
+		final long counts[];
+
+		final long total;
+
+		SubCounts(int values[], long counts[]){
+			this.values = values;
+			this.counts = counts;
+			long sum = 0;
+			for(long c : counts)
+				sum += c;
+			this.total = sum;
+		}
+
+		//index of the first value >= min
+		int lowerIndex(int min){
+			if(values.length <= LINEAR_SCAN_SIZE) //not worth narrowing, just scan them all
+				return 0;
+			int lo = 0, hi = values.length;
+			while(lo < hi){
+				int mid = (lo + hi) >>> 1;
+				if(values[mid] < min)
+					lo = mid + 1;
+				else
+					hi = mid;
+			}
+			return lo;
+		}
+
+		//index just past the last value <= max
+		int upperIndex(int max){
+			if(max == Integer.MAX_VALUE || values.length <= LINEAR_SCAN_SIZE)
+				return values.length;
+			return lowerIndex(max + 1);
+		}
+
+		long countOf(int value){
+			int index = Arrays.binarySearch(values, value);
+			return index >= 0 ? counts[index] : 0;
+		}
+
+		//builds from a dense array, clearing it for reuse
+		static SubCounts fromDense(long dense[]){
+			int size = 0;
+			for(int i=0; i<dense.length; i++){
+				if(dense[i] != 0)
+					size++;
+			}
+			int values[] = new int[size];
+			long counts[] = new long[size];
+			int v = 0;
+			for(int i=0; i<dense.length; i++){
+				if(dense[i] != 0){
+					values[v] = i - OFFSET;
+					counts[v++] = dense[i];
+					dense[i] = 0;
+				}
+			}
+			return new SubCounts(values, counts);
+		}
+	}
+}
@@ -0,0 +1,286 @@
+package solver;
+
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.Stack;
+import java.util.function.Consumer;
+
+import back_end.GameState;
+import back_end.Move;
+import back_end.Operation;
+
+/**
+ * Lazily enumerates every distinct solution of a game state, one search step at a time.
+ *
+ * A solution is an expression tree over the piece values, so solutions that only differ by the order independent
+ * moves are made in, by which of two equal pieces or equal operations plays which role, or by the operand order of a
+ * commutative operation are reported once. Trees are built as their postfix strings: each step either pushes a
+ * starting value not yet used up or combines the two trees on top of the stack. Equal starting values are one choice,
+ * and operations are one choice per kind (see OpCounts), so no tree is built twice through swapped pieces or
+ * operations. A commutative operation only combines two trees whose postfix strings are in order, so each tree is
+ * built in exactly one canonical form. Each solution is handed out as the line of moves that
+ * makes it in postfix order.
+ *
+ * The search runs in place on preallocated per-depth arrays and only does work when another solution is requested,
+ * so a short-circuiting stream (e.g. limit(n)) stops it immediately. trySplit hands off the first half of the not yet
+ * started choices at the shallowest depth that has some, so the enumeration can run in a parallel stream.
+ *
+ * @author Kelton Finch
+ */
+public class SolutionSpliterator implements Spliterator<Stack<Move>> {
+
+	private static final long OP_TOKEN = Long.MIN_VALUE; //token for counts.kinds[k] is OP_TOKEN + k, below every value
+
+	private final GameState gs;
+	private final OpCounts counts;
+	private final int goal;
+	private final int numStartPieces;
+	private final int values[]; //distinct starting values, in increasing order
+	private final int numChoices; //a push of each distinct value, then a combine with each kind of operation
+
+	private final long tokens[]; //postfix string of the current line, token d was chosen at depth d
+
+	//the position at each depth
+	private final int left[][]; //starting pieces of each distinct value not yet pushed
+	private final int stackValues[][]; //values of the trees on the stack, bottom first
+	private final int stackStarts[][]; //token each tree on the stack starts at
+	private final int stackSize[];
+	private final int opsAvailable[];
+
+	private final int cursor[]; //next choice to try at each depth
+	private final int limit[]; //first choice at each depth that belongs to some other spliterator
+	private int floor; //shallowest depth this spliterator searches
+	private int depth; //deepest active depth, floor-1 once exhausted
+
+	public SolutionSpliterator(GameState gs){
+		this.gs = new GameState(gs);
+		this.counts = new OpCounts(gs);
+		this.goal = gs.getGoal();
+		this.numStartPieces = gs.getNumPieces();
+
+		int sorted[] = new int[numStartPieces];
+		for(int i=0; i<numStartPieces; i++)
+			sorted[i] = gs.pieceAt(i);
+		Arrays.sort(sorted);
+		int numValues = 0;
+		int copies[] = new int[numStartPieces];
+		for(int i=0; i<numStartPieces; i++){
+			if(numValues == 0 || sorted[numValues-1] != sorted[i])
+				sorted[numValues++] = sorted[i];
+			copies[numValues-1]++;
+		}
+		values = Arrays.copyOf(sorted, numValues);
+		numChoices = numValues + counts.numKinds();
+
+		int length = 2*numStartPieces - 1; //every piece is pushed once and every piece but one combined away
+		tokens = new long[length];
+		left = new int[length+1][numValues];
+		stackValues = new int[length+1][numStartPieces];
+		stackStarts = new int[length+1][numStartPieces];
+		stackSize = new int[length+1];
+		opsAvailable = new int[length+1];
+		cursor = new int[length+1];
+		limit = new int[length+1];
+		Arrays.fill(limit, Integer.MAX_VALUE);
+
+		System.arraycopy(copies, 0, left[0], 0, numValues);
+		opsAvailable[0] = counts.all;
+		floor = 0;
+		boolean enoughOps = counts.reusable || gs.getNumOps() >= numStartPieces - 1; //every move uses up an operation
+		depth = enoughOps ? 0 : -1;
+	}
+
+	//copies every depth of the search so far, for trySplit
+	private SolutionSpliterator(SolutionSpliterator other){
+		gs = other.gs;
+		counts = other.counts;
+		goal = other.goal;
+		numStartPieces = other.numStartPieces;
+		values = other.values;
+		numChoices = other.numChoices;
+		tokens = other.tokens.clone();
+		left = deepCopy(other.left);
+		stackValues = deepCopy(other.stackValues);
+		stackStarts = deepCopy(other.stackStarts);
+		stackSize = other.stackSize.clone();
+		opsAvailable = other.opsAvailable.clone();
+		cursor = other.cursor.clone();
+		limit = other.limit.clone();
+		floor = other.floor;
+		depth = other.depth;
+	}
+
+	@Override
+	public boolean tryAdvance(Consumer<? super Stack<Move>> action){
+		while(depth >= floor){
+			int d = depth;
+			if(d == tokens.length){ //ending position
+				depth--;
+				if(stackValues[d][0] == goal){
+					action.accept(solution());
+					return true;
+				}
+				continue;
+			}
+
+			if(cursor[d] >= Math.min(numChoices, limit[d])){ //every choice from here has been tried
+				depth--;
+				continue;
+			}
+			tryChoice(d, cursor[d]++);
+		}
+		return false;
+	}
+
+	/*
+	 * Makes choice c at depth d and descends, if it is legal and canonical. The first choices push each distinct
+	 * starting value, the rest combine the top two trees with each kind of operation.
+	 */
+	private void tryChoice(int d, int c){
+		int size = stackSize[d];
+		int next = d+1;
+		if(c < values.length){
+			if(left[d][c] == 0)
+				return;
+			copyPosition(d, size);
+			left[next][c]--;
+			stackValues[next][size] = values[c];
+			stackStarts[next][size] = d;
+			stackSize[next] = size+1;
+			opsAvailable[next] = opsAvailable[d];
+			tokens[d] = values[c];
+		}
+		else{
+			int k = c - values.length;
+			if(size < 2 || !counts.has(opsAvailable[d], k))
+				return;
+			Operation op = counts.kinds[k];
+			int first = size-2;
+			int second = size-1;
+			int result = op.evaluate(stackValues[d][first], stackValues[d][second], gs.getBounds());
+			if(!Operation.isValid(result))
+				return;
+			if(op.isCommutative && compareTrees(stackStarts[d][first], stackStarts[d][second], d) > 0)
+				return; //the other operand order is the canonical one
+			copyPosition(d, second);
+			stackValues[next][first] = result;
+			stackSize[next] = second;
+			opsAvailable[next] = counts.use(opsAvailable[d], k);
+			tokens[d] = OP_TOKEN + k;
+		}
+		cursor[next] = 0;
+		depth = next;
+	}
+
+	//copies the unused values and the bottom size trees of the stack from depth d to the next
+	private void copyPosition(int d, int size){
+		System.arraycopy(left[d], 0, left[d+1], 0, values.length);
+		System.arraycopy(stackValues[d], 0, stackValues[d+1], 0, size);
+		System.arraycopy(stackStarts[d], 0, stackStarts[d+1], 0, size);
+	}
+
+	/*
+	 * Orders the trees with postfix strings tokens[a..b) and tokens[b..end), any fixed order would do.
+	 */
+	private int compareTrees(int a, int b, int end){
+		for(int t=0; a+t < b && b+t < end; t++){
+			if(tokens[a+t] != tokens[b+t])
+				return tokens[a+t] < tokens[b+t] ? -1 : 1;
+		}
+		return (b - a) - (end - b);
+	}
+
+	/*
+	 * Replays the postfix string on the starting pieces to find the moves making it. Pushes take the first unused
+	 * piece with the value, and combines the first operation of the kind still available.
+	 */
+	private Stack<Move> solution(){
+		int slots[] = new int[numStartPieces]; //which tree is in each slot of the GameState the player would see
+		for(int i=0; i<numStartPieces; i++)
+			slots[i] = i;
+		int numSlots = numStartPieces;
+		boolean pushed[] = new boolean[numStartPieces];
+		Operation opsLeft[] = gs.getOps().clone();
+		int numOpsLeft = gs.getNumOps();
+		int stack[] = new int[numStartPieces];
+		int size = 0;
+		Move moves[] = new Move[numStartPieces-1];
+		int numMoves = 0;
+
+		for(int t=0; t<tokens.length; t++){
+			if(tokens[t] >= OP_TOKEN + counts.numKinds()){
+				int i = 0;
+				while(pushed[i] || gs.pieceAt(i) != tokens[t])
+					i++;
+				pushed[i] = true;
+				stack[size++] = i;
+				continue;
+			}
+			Operation op = counts.kinds[(int)(tokens[t] - OP_TOKEN)];
+			int opIndex = 0;
+			while(opsLeft[opIndex].kind != op.kind)
+				opIndex++;
+			int secondTree = stack[--size];
+			int firstTree = stack[--size];
+			int firstIndex = indexOf(slots, numSlots, firstTree);
+			int secondIndex = indexOf(slots, numSlots, secondTree);
+			moves[numMoves++] = new Move(firstIndex, secondIndex, opIndex);
+
+			//GameState.combine puts the result in the second operand's place, then closes the gap left by the first
+			int built = numStartPieces + t;
+			slots[secondIndex] = built;
+			System.arraycopy(slots, firstIndex+1, slots, firstIndex, --numSlots - firstIndex);
+			stack[size++] = built;
+			if(!counts.reusable)
+				System.arraycopy(opsLeft, opIndex+1, opsLeft, opIndex, --numOpsLeft - opIndex);
+		}
+
+		Stack<Move> result = new Stack<Move>();
+		for(int m=numMoves-1; m>=0; m--)
+			result.push(moves[m]);
+		return result;
+	}
+
+	private static int indexOf(int array[], int length, int value){
+		for(int i=0; i<length; i++){
+			if(array[i] == value)
+				return i;
+		}
+		return -1;
+	}
+
+	private static int[][] deepCopy(int array[][]){
+		int copy[][] = new int[array.length][];
+		for(int i=0; i<array.length; i++)
+			copy[i] = array[i].clone();
+		return copy;
+	}
+
+	@Override
+	public Spliterator<Stack<Move>> trySplit(){
+		for(int d=floor; d<=depth && d<tokens.length; d++){
+			int end = Math.min(numChoices, limit[d]);
+			if(end - cursor[d] < 2)
+				continue;
+			//the copy keeps the current line and the first half of the choices left at d, this keeps the rest
+			int middle = (cursor[d] + end) >>> 1;
+			SolutionSpliterator prefix = new SolutionSpliterator(this);
+			prefix.limit[d] = middle;
+			prefix.floor = d;
+			cursor[d] = middle;
+			depth = d;
+			return prefix;
+		}
+		return null;
+	}
+
+	@Override
+	public long estimateSize(){
+		return Long.MAX_VALUE;
+	}
+
+	@Override
+	public int characteristics(){
+		return ORDERED | NONNULL;
+	}
+}
@@ -0,0 +1,329 @@
+package solver;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Stack;
+
+import back_end.GameState;
+import back_end.Move;
+import back_end.Operation;
+
+/**
+ * Precomputed table of which goals every roll of dice can reach, read straight from a memory-mapped file.
+ *
+ * An atlas covers every multiset of numPieces dice with faces 1..maxFace, for a range of numPieces, with one set of
+ * reusable operations and a range of goals. Each multiset has a fixed size record: a bitmap of its solvable goals and
+ * the offset of its witness solutions, which are stored one per solvable goal in goal order. A multiset's record is
+ * found by its rank in the combinatorial number system, and a witness by counting the solvable goals below it, so a
+ * lookup reads a few words of the file and copies none of it onto the heap.
+ *
+ * File layout (big-endian):
+ * 		int magic, int version, int maxFace, int minPieces, int maxPieces, int minGoal, int maxGoal (exclusive),
+ * 		int numOps, int opCodes[numOps] (ascending), int numRecords, long witnessStart,
+ * 		records: numRecords x (long goalBits[ceil(numGoals/64)], int witnessOffset),
+ * 		witnesses: per solvable goal, numPieces-1 moves of 3 bytes (firstIndex, secondIndex, opIndex), made on the
+ * 		multiset's pieces in ascending order with the operations in opCodes order.
+ *
+ * Run main to build an atlas, or build the MathPuzzle module with -Patlas, which writes DEFAULT_FILE next to its pom.
+ * The game looks for DEFAULT_FILE in its working directory, and generates rolls without one if it isn't there.
+ *
+ * @author Kelton Finch
+ */
+public class SolvabilityAtlas {
+
+	public static final String DEFAULT_FILE = "dice.atlas";
+
+	private static final int MAGIC = 0x51444154; //"QDAT"
+	private static final int VERSION = 2; //2: exact EXPONENT and ROOT, so atlases built before give different answers
+	private static final int MOVE_BYTES = 3;
+
+	private final MappedByteBuffer buffer;
+	private final int maxFace;
+	private final int minPieces;
+	private final int maxPieces;
+	private final int minGoal;
+	private final int maxGoal;
+	private final int opCodes[];
+	private final Operation ops[];
+	private final long witnessStart;
+	private final int recordsStart;
+	private final int goalWords; //longs in each record's goal bitmap
+	private final int recordSize;
+	private final int firstRecord[]; //index of the first record for each number of pieces
+
+	private SolvabilityAtlas(MappedByteBuffer buffer) throws IOException{
+		this.buffer = buffer;
+		if(buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION)
+			throw new IOException("Not a version " + VERSION + " solvability atlas");
+		maxFace = buffer.getInt(8);
+		minPieces = buffer.getInt(12);
+		maxPieces = buffer.getInt(16);
+		minGoal = buffer.getInt(20);
+		maxGoal = buffer.getInt(24);
+		int numOps = buffer.getInt(28);
+		opCodes = new int[numOps];
+		ops = new Operation[numOps];
+		for(int k=0; k<numOps; k++){
+			opCodes[k] = buffer.getInt(32 + 4*k);
+			ops[k] = new Operation(opCodes[k]);
+		}
+		int at = 32 + 4*numOps + 4; //skips numRecords, which firstRecord recomputes
+		witnessStart = buffer.getLong(at);
+		recordsStart = at + 8;
+
+		goalWords = wordsFor(maxGoal - minGoal);
+		recordSize = 8*goalWords + 4;
+		firstRecord = firstRecords(maxFace, minPieces, maxPieces);
+	}
+
+	/**
+	 * Memory-maps an atlas file. The mapping stays valid after the file is closed.
+	 */
+	public static SolvabilityAtlas open(File file) throws IOException{
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try{
+			FileChannel channel = raf.getChannel();
+			return new SolvabilityAtlas(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+		finally{
+			raf.close();
+		}
+	}
+
+	/**
+	 * @return True if the atlas has an entry for the game state: its pieces are dice the atlas covers, its goal is in
+	 * 		   the atlas's range, its operations are the atlas's operations (in any order) and reusable, and its pieces
+	 * 		   are kept to the default range, which the atlas was built for.
+	 */
+	public boolean covers(GameState gs){
+		int n = gs.getNumPieces();
+		if(n < minPieces || n > maxPieces || !gs.isOpsReusable() || gs.getGoal() < minGoal || gs.getGoal() >= maxGoal)
+			return false;
+		if(!gs.getBounds().hasDefaultPieceSizes()) //the piece range changes which goals are reachable
+			return false;
+		for(int i=0; i<n; i++){
+			if(gs.pieceAt(i) < 1 || gs.pieceAt(i) > maxFace)
+				return false;
+		}
+		if(gs.getNumOps() != opCodes.length)
+			return false;
+		int codes[] = new int[opCodes.length];
+		for(int k=0; k<codes.length; k++)
+			codes[k] = gs.opAt(k).opCode;
+		Arrays.sort(codes);
+		return Arrays.equals(codes, opCodes);
+	}
+
+	/**
+	 * @param gs A game state the atlas covers.
+	 * @return True if the game state has a solution.
+	 */
+	public boolean isSolvable(GameState gs){
+		int goalIndex = gs.getGoal() - minGoal;
+		long word = buffer.getLong(recordPosition(sortedPieces(gs)) + 8*(goalIndex >>> 6));
+		return (word & (1L << goalIndex)) != 0;
+	}
+
+	/**
+	 * @param gs A game state the atlas covers.
+	 * @return A solution for the game state, in the same form PuzzleSolver.solve returns, or null if it has none.
+	 */
+	public Stack<Move> solution(GameState gs){
+		int pieces[] = sortedPieces(gs);
+		int record = recordPosition(pieces);
+		int goalIndex = gs.getGoal() - minGoal;
+		int word = goalIndex >>> 6;
+		long bits = buffer.getLong(record + 8*word);
+		if((bits & (1L << goalIndex)) == 0)
+			return null;
+
+		int rank = Long.bitCount(bits & ((1L << goalIndex) - 1)); //solvable goals before this one
+		for(int w=0; w<word; w++)
+			rank += Long.bitCount(buffer.getLong(record + 8*w));
+		int numMoves = pieces.length - 1;
+		long at = witnessStart + buffer.getInt(record + 8*goalWords) + (long) rank * numMoves * MOVE_BYTES;
+
+		//replays the witness on the sorted pieces to recover it by value, then maps it onto gs's piece order
+		GameState sorted = new GameState(pieces, ops, pieces.length, ops.length, gs.getGoal(), true);
+		List<Step> steps = new ArrayList<Step>(numMoves);
+		for(int m=0; m<numMoves; m++){
+			int p = (int) (at + m*MOVE_BYTES);
+			int firstIndex = buffer.get(p) & 0xff;
+			int secondIndex = buffer.get(p+1) & 0xff;
+			int opIndex = buffer.get(p+2) & 0xff;
+			steps.add(new Step(sorted.pieceAt(firstIndex), sorted.pieceAt(secondIndex), sorted.opAt(opIndex)));
+			sorted.tryCombine(firstIndex, secondIndex, opIndex);
+		}
+		return Step.toMoves(gs, steps);
+	}
+
+	private int recordPosition(int sortedPieces[]){
+		return recordsStart + (firstRecord[sortedPieces.length - minPieces] + rank(sortedPieces)) * recordSize;
+	}
+
+	private static int[] sortedPieces(GameState gs){
+		int pieces[] = new int[gs.getNumPieces()];
+		for(int i=0; i<pieces.length; i++)
+			pieces[i] = gs.pieceAt(i);
+		Arrays.sort(pieces);
+		return pieces;
+	}
+
+	/*
+	 * Rank of a multiset of dice among all multisets of the same size, given in ascending order.
+	 * Die i (counting from 0) with face f maps to f - 1 + i, which makes the faces a strictly increasing combination,
+	 * and the rank of that combination is the sum of binomial(c_i, i+1).
+	 */
+	private static int rank(int sortedPieces[]){
+		int rank = 0;
+		for(int i=0; i<sortedPieces.length; i++)
+			rank += binomial(sortedPieces[i] - 1 + i, i+1);
+		return rank;
+	}
+
+	private static int[] firstRecords(int maxFace, int minPieces, int maxPieces){
+		int first[] = new int[maxPieces - minPieces + 2]; //the extra entry is the total number of records
+		for(int n=minPieces; n<=maxPieces; n++)
+			first[n - minPieces + 1] = first[n - minPieces] + multisets(maxFace, n);
+		return first;
+	}
+
+	//number of multisets of n dice with the given number of faces
+	private static int multisets(int maxFace, int n){
+		return binomial(maxFace + n - 1, n);
+	}
+
+	private static int binomial(int n, int k){
+		if(k < 0 || k > n)
+			return 0;
+		long result = 1;
+		for(int i=1; i<=k; i++){
+			result = result * (n - k + i) / i;
+			if(result > Integer.MAX_VALUE)
+				throw new IllegalArgumentException("Too many dice combinations for an atlas");
+		}
+		return (int) result;
+	}
+
+	private static int wordsFor(int numGoals){
+		return (numGoals + 63) >>> 6;
+	}
+
+	/**
+	 * Builds an atlas file. Every multiset is solved for every goal at once with MeetInTheMiddleSolver, which works out
+	 * its small groups' values once for all the goals: every roll of up to ten six-sided dice takes about a minute.
+	 * @param file Where to write the atlas.
+	 * @param ops The operations the atlas is for. They are treated as reusable.
+	 * @param maxFace The highest face of the dice. The lowest is 1.
+	 * @param minPieces The fewest dice covered.
+	 * @param maxPieces The most dice covered.
+	 * @param minGoal The lowest goal covered (inclusive)
+	 * @param maxGoal The highest goal covered (exclusive)
+	 */
+	public static void build(File file, Operation ops[], int maxFace, int minPieces, int maxPieces, int minGoal, int maxGoal)
+			throws IOException{
+		if(minPieces < 1 || maxPieces < minPieces || maxPieces > GameState.MAX_PIECES || maxFace < 1 || maxGoal <= minGoal)
+			throw new IllegalArgumentException("Bad atlas dimensions");
+
+		Operation sortedOps[] = ops.clone();
+		Arrays.sort(sortedOps, (a, b) -> Integer.compare(a.opCode, b.opCode));
+		int first[] = firstRecords(maxFace, minPieces, maxPieces);
+		int numRecords = first[first.length - 1];
+		int goalWords = wordsFor(maxGoal - minGoal);
+		long goalBits[] = new long[numRecords * goalWords];
+		int witnessOffsets[] = new int[numRecords];
+
+		MeetInTheMiddleSolver solver = new MeetInTheMiddleSolver();
+		ByteArrayOutputStream witnesses = new ByteArrayOutputStream();
+		for(int n=minPieces; n<=maxPieces; n++){
+			int pieces[] = new int[n];
+			Arrays.fill(pieces, 1);
+			do{
+				int record = first[n - minPieces] + rank(pieces);
+				witnessOffsets[record] = witnesses.size();
+				GameState gs = new GameState(pieces, sortedOps, n, sortedOps.length, minGoal, true);
+				List<Stack<Move>> solutions = solver.solveGoals(gs, minGoal, maxGoal);
+				for(int goal=minGoal; goal<maxGoal; goal++){
+					Stack<Move> witness = solutions.get(goal - minGoal);
+					if(witness == null)
+						continue;
+					int goalIndex = goal - minGoal;
+					goalBits[record * goalWords + (goalIndex >>> 6)] |= 1L << goalIndex;
+					while(!witness.isEmpty()){
+						Move m = witness.pop();
+						witnesses.write(m.firstIndex);
+						witnesses.write(m.secondIndex);
+						witnesses.write(m.opIndex);
+					}
+				}
+			}while(nextMultiset(pieces, maxFace));
+		}
+
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		try{
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(maxFace);
+			out.writeInt(minPieces);
+			out.writeInt(maxPieces);
+			out.writeInt(minGoal);
+			out.writeInt(maxGoal);
+			out.writeInt(sortedOps.length);
+			for(Operation op : sortedOps)
+				out.writeInt(op.opCode);
+			out.writeInt(numRecords);
+			long witnessStart = out.size() + 8L + (long) numRecords * (8*goalWords + 4);
+			out.writeLong(witnessStart);
+			for(int r=0; r<numRecords; r++){
+				for(int w=0; w<goalWords; w++)
+					out.writeLong(goalBits[r * goalWords + w]);
+				out.writeInt(witnessOffsets[r]);
+			}
+			witnesses.writeTo(out);
+		}
+		finally{
+			out.close();
+		}
+	}
+
+	//steps to the next ascending multiset of dice, returning false after the last one
+	static boolean nextMultiset(int pieces[], int maxFace){
+		int i = pieces.length - 1;
+		while(i >= 0 && pieces[i] == maxFace)
+			i--;
+		if(i < 0)
+			return false;
+		pieces[i]++;
+		for(int j=i+1; j<pieces.length; j++)
+			pieces[j] = pieces[i];
+		return true;
+	}
+
+	/**
+	 * Builds an atlas with the default operations.
+	 * Arguments: file [minPieces maxPieces [maxFace minGoal maxGoal]], defaulting to every roll of 1 to
+	 * GameState.MAX_PIECES of the dice that GameState() rolls, for the goals it picks.
+	 */
+	public static void main(String args[]) throws IOException{
+		File file = new File(args.length > 0 ? args[0] : DEFAULT_FILE);
+		int minPieces = args.length > 2 ? Integer.parseInt(args[1]) : 1;
+		int maxPieces = args.length > 2 ? Integer.parseInt(args[2]) : GameState.MAX_PIECES;
+		int maxFace = args.length > 5 ? Integer.parseInt(args[3]) : GameState.DEFAULT_MAX_PIECE;
+		int minGoal = args.length > 5 ? Integer.parseInt(args[4]) : GameState.DEFAULT_MIN_GOAL;
+		int maxGoal = args.length > 5 ? Integer.parseInt(args[5]) : GameState.DEFAULT_MAX_GOAL;
+
+		long start = System.currentTimeMillis();
+		build(file, GameState.defaultOps(), maxFace, minPieces, maxPieces, minGoal, maxGoal);
+		System.out.println("Wrote " + file + " (" + file.length() + " bytes) in " + (System.currentTimeMillis() - start) + "ms");
+	}
+}
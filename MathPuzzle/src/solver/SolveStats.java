@@ -0,0 +1,170 @@
+package solver;
+
+import back_end.Bounds;
+import back_end.Operation;
+
+/**
+ * What solves did, for finding out why some rolls take far longer than others: nodes expanded at each depth (moves
+ * made so far), illegal combinations tried per operation and kind of error, cache hits and misses, and time to the
+ * first solution and in total.
+ *
+ * Pass one to PuzzleSolver.solve(gs, stats) and that solve's counts are added to it, so giving the same one to every
+ * solve of a batch totals the batch, and totals kept separately (one per thread, say) can be combined with add.
+ * Solves given no SolveStats count nothing beyond the solver's own counters.
+ *
+ * Puzzles a solver hands to MeetInTheMiddleSolver (see PuzzleSolver.setMeetInTheMiddle) expand no nodes, so they only
+ * add to the solve counts and times.
+ * Not thread safe.
+ *
+ * @author Kelton Finch
+ */
+public class SolveStats {
+
+	private static final int CUSTOM_ROW = Operation.MODULO + 1; //illegal combinations of every custom operation
+
+	private final long nodesAtDepth[] = new long[Bounds.PIECES_LIMIT];
+	private final long illegal[][] = new long[CUSTOM_ROW + 1][Operation.NUM_INVALID_RESULTS];
+	private long cacheHits;
+	private long cacheMisses;
+
+	private long solves;
+	private long solutionsFound;
+	private long nanosToSolution; //summed over the solves that found one
+	private long totalNanos;
+
+	void countNode(int depth){
+		nodesAtDepth[depth]++;
+	}
+
+	/**
+	 * @param result The error code op gave, which isValid rejects.
+	 */
+	void countIllegal(Operation op, int result){
+		illegal[row(op.opCode)][result - Operation.DIVIDE_BY_ZERO]++;
+	}
+
+	void countCacheHit(){
+		cacheHits++;
+	}
+
+	void countCacheMiss(){
+		cacheMisses++;
+	}
+
+	/**
+	 * @param nanosToSolution How long the search took to find its solution, or -1 if it found none.
+	 * @param nanos How long the whole solve took.
+	 */
+	void countSolve(long nanosToSolution, long nanos){
+		solves++;
+		if(nanosToSolution >= 0){
+			solutionsFound++;
+			this.nanosToSolution += nanosToSolution;
+		}
+		totalNanos += nanos;
+	}
+
+	/**
+	 * Adds every count in other to this one's.
+	 */
+	public void add(SolveStats other){
+		for(int d=0; d<nodesAtDepth.length; d++)
+			nodesAtDepth[d] += other.nodesAtDepth[d];
+		for(int r=0; r<illegal.length; r++){
+			for(int e=0; e<illegal[r].length; e++)
+				illegal[r][e] += other.illegal[r][e];
+		}
+		cacheHits += other.cacheHits;
+		cacheMisses += other.cacheMisses;
+		solves += other.solves;
+		solutionsFound += other.solutionsFound;
+		nanosToSolution += other.nanosToSolution;
+		totalNanos += other.totalNanos;
+	}
+
+	/**
+	 * @return Nodes expanded with depth moves made, i.e. with depth fewer pieces than the puzzle started with.
+	 */
+	public long getNodesAtDepth(int depth){
+		return depth < nodesAtDepth.length ? nodesAtDepth[depth] : 0;
+	}
+
+	public long getNodesExpanded(){
+		long total = 0;
+		for(int d=0; d<nodesAtDepth.length; d++)
+			total += nodesAtDepth[d];
+		return total;
+	}
+
+	/**
+	 * @param opCode One of the pre-built op codes, or Operation.CUSTOM for every custom operation together.
+	 * @param error One of the error codes in Operation (DIVIDE_BY_ZERO, FRACTION, TOO_LARGE and so on).
+	 * @return The illegal combinations tried with that kind of operation that gave that error.
+	 */
+	public long getIllegal(int opCode, int error){
+		return illegal[row(opCode)][error - Operation.DIVIDE_BY_ZERO];
+	}
+
+	/**
+	 * @return The illegal combinations tried with that kind of operation, whatever the error.
+	 */
+	public long getIllegal(int opCode){
+		long total = 0;
+		for(int e=0; e<Operation.NUM_INVALID_RESULTS; e++)
+			total += illegal[row(opCode)][e];
+		return total;
+	}
+
+	public long getCacheHits(){
+		return cacheHits;
+	}
+
+	public long getCacheMisses(){
+		return cacheMisses;
+	}
+
+	public long getSolves(){
+		return solves;
+	}
+
+	public long getSolutionsFound(){
+		return solutionsFound;
+	}
+
+	/**
+	 * @return Time spent searching until a solution was found, summed over the solves that found one.
+	 */
+	public long getNanosToSolution(){
+		return nanosToSolution;
+	}
+
+	/**
+	 * @return Wall time of every solve, including unsolvable ones and turning lines into moves.
+	 */
+	public long getTotalNanos(){
+		return totalNanos;
+	}
+
+	private static int row(int opCode){
+		return opCode == Operation.CUSTOM ? CUSTOM_ROW : opCode;
+	}
+
+	public String toString(){
+		String result = solves + " solves, " + solutionsFound + " solved, " + totalNanos/1000000 + "ms total";
+		if(solutionsFound > 0)
+			result += ", " + nanosToSolution/solutionsFound/1000 + "us to solution on average";
+		result += "\nNodes by depth:";
+		for(int d=0; d<nodesAtDepth.length && nodesAtDepth[d] > 0; d++)
+			result += " " + nodesAtDepth[d];
+		if(cacheHits + cacheMisses > 0)
+			result += "\nCache: " + cacheHits + " hits, " + cacheMisses + " misses";
+		for(int r=0; r<illegal.length; r++){
+			for(int e=0; e<illegal[r].length; e++){
+				if(illegal[r][e] > 0)
+					result += "\nIllegal " + (r == CUSTOM_ROW ? "custom" : new Operation(r).toString()) + ": "
+							+ illegal[r][e] + " " + Operation.invalidMessage(Operation.DIVIDE_BY_ZERO + e);
+			}
+		}
+		return result;
+	}
+}
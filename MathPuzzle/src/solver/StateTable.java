@@ -0,0 +1,152 @@
+package solver;
+
+import java.util.Arrays;
+
+/**
+ * A hash map from packed positions (see PackedState) to ints, without boxing or per-entry objects.
+ *
+ * Open addressing with linear probing over one long array of keys (high and low words side by side) and one int array
+ * of values. A high word of 0 marks an empty slot, which no packed position has. The table doubles when it gets three
+ * quarters full, so an entry costs 20 to 40 bytes, against well over 100 for a HashMap entry with a CanonicalState key
+ * and a boxed value. Entries can't be removed individually, only all at once with clear.
+ *
+ * Not thread safe.
+ *
+ * @author Kelton Finch
+ */
+public class StateTable {
+
+	public static final int DEFAULT_CAPACITY = 1 << 10;
+	private static final int MAX_CAPACITY = 1 << 29; //keys array is twice this
+
+	private long keys[]; //slot s holds its key at 2s (high) and 2s+1 (low)
+	private int values[];
+	private int mask; //capacity - 1
+	private int size;
+	private int resizeAt;
+
+	public StateTable(){
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param expectedSize How many entries the table should hold before it has to grow.
+	 */
+	public StateTable(int expectedSize){
+		int capacity = DEFAULT_CAPACITY;
+		while(capacity < MAX_CAPACITY && capacity / 4 * 3 < expectedSize)
+			capacity <<= 1;
+		allocate(capacity);
+	}
+
+	/**
+	 * @return The value stored for the packed position, or missing if there is none.
+	 */
+	public int get(long high, long low, int missing){
+		for(int s=slot(high, low); ; s=(s+1) & mask){
+			long h = keys[2*s];
+			if(h == 0)
+				return missing;
+			if(h == high && keys[2*s+1] == low)
+				return values[s];
+		}
+	}
+
+	public boolean containsKey(long high, long low){
+		for(int s=slot(high, low); ; s=(s+1) & mask){
+			long h = keys[2*s];
+			if(h == 0)
+				return false;
+			if(h == high && keys[2*s+1] == low)
+				return true;
+		}
+	}
+
+	/**
+	 * Stores a value for the packed position, replacing any value already stored for it.
+	 * @throws IllegalStateException if the table can't grow any further.
+	 */
+	public void put(long high, long low, int value){
+		int s = find(high, low);
+		if(keys[2*s] == 0)
+			s = insert(s, high, low);
+		values[s] = value;
+	}
+
+	/**
+	 * Uses the table as a set: adds the packed position with a value of 0 if it isn't already in the table.
+	 * @return true if it was added, false if it was already there.
+	 * @throws IllegalStateException if the table can't grow any further.
+	 */
+	public boolean add(long high, long low){
+		int s = find(high, low);
+		if(keys[2*s] != 0)
+			return false;
+		insert(s, high, low);
+		return true;
+	}
+
+	public int size(){
+		return size;
+	}
+
+	/**
+	 * Removes every entry. Keeps the table at its current capacity.
+	 */
+	public void clear(){
+		Arrays.fill(keys, 0);
+		Arrays.fill(values, 0);
+		size = 0;
+	}
+
+	private void allocate(int capacity){
+		keys = new long[2*capacity];
+		values = new int[capacity];
+		mask = capacity - 1;
+		resizeAt = capacity / 4 * 3;
+	}
+
+	//returns the slot holding the key, or the empty slot where it belongs
+	private int find(long high, long low){
+		int s = slot(high, low);
+		while(keys[2*s] != 0 && (keys[2*s] != high || keys[2*s+1] != low))
+			s = (s+1) & mask;
+		return s;
+	}
+
+	//puts the key in empty slot s, growing the table first if it's full. Returns the slot the key ended up in.
+	private int insert(int s, long high, long low){
+		if(size >= resizeAt){
+			grow();
+			s = find(high, low);
+		}
+		keys[2*s] = high;
+		keys[2*s+1] = low;
+		size++;
+		return s;
+	}
+
+	private void grow(){
+		if(mask + 1 >= MAX_CAPACITY)
+			throw new IllegalStateException("StateTable can't hold more than " + resizeAt + " entries");
+		long oldKeys[] = keys;
+		int oldValues[] = values;
+		allocate(2 * (mask + 1));
+		for(int old=0; old<oldValues.length; old++){
+			if(oldKeys[2*old] == 0)
+				continue;
+			int s = find(oldKeys[2*old], oldKeys[2*old+1]);
+			keys[2*s] = oldKeys[2*old];
+			keys[2*s+1] = oldKeys[2*old+1];
+			values[s] = oldValues[old];
+		}
+	}
+
+	private int slot(long high, long low){
+		long h = high * 0x9E3779B97F4A7C15L + low;
+		h ^= h >>> 32;
+		h *= 0xD6E8FEB86659FD93L;
+		h ^= h >>> 32;
+		return (int) h & mask;
+	}
+}
@@ -0,0 +1,79 @@
+package solver;
+
+import java.util.List;
+import java.util.Stack;
+
+import back_end.GameState;
+import back_end.Move;
+import back_end.Operation;
+
+/**
+ * A single combine expressed by operand values rather than piece indices.
+ * Solutions stored this way stay valid for any ordering of the same pieces, which lets
+ * solvers share them between game states that only differ in piece order.
+ *
+ * @author Kelton Finch
+ */
+public class Step {
+	public final int first;
+	public final int second;
+	public final Operation op;
+
+	public Step(int first, int second, Operation op){
+		this.first = first;
+		this.second = second;
+		this.op = op;
+	}
+
+	/**
+	 * Converts a line of steps into the move stack format returned by PuzzleSolver, by replaying it on a copy of gs.
+	 * @param gs The game state the line starts from. Not modified.
+	 * @param steps The steps to be applied, in order.
+	 * @return A stack of moves with the first move on top, or null if the line can't be played from gs.
+	 */
+	public static Stack<Move> toMoves(GameState gs, List<Step> steps){
+		GameState current = new GameState(gs);
+		Move moves[] = new Move[steps.size()];
+		for(int s=0; s<steps.size(); s++){
+			Step step = steps.get(s);
+			int firstIndex = indexOf(current, step.first, -1);
+			int secondIndex = indexOf(current, step.second, firstIndex);
+			int opIndex = opIndexOf(current, step.op);
+			if(firstIndex < 0 || secondIndex < 0 || opIndex < 0)
+				return null;
+			moves[s] = new Move(firstIndex, secondIndex, opIndex);
+			if(!Operation.isValid(current.tryCombine(firstIndex, secondIndex, opIndex)))
+				return null;
+		}
+
+		Stack<Move> result = new Stack<Move>();
+		for(int s=moves.length-1; s>=0; s--)
+			result.push(moves[s]);
+		return result;
+	}
+
+	private static int indexOf(GameState gs, int value, int skipIndex){
+		for(int i=0; i<gs.getNumPieces(); i++){
+			if(i != skipIndex && gs.pieceAt(i) == value)
+				return i;
+		}
+		return -1;
+	}
+
+	//prefers the exact operation instance, but falls back to any operation of the same kind
+	private static int opIndexOf(GameState gs, Operation op){
+		for(int k=0; k<gs.getNumOps(); k++){
+			if(gs.opAt(k) == op)
+				return k;
+		}
+		for(int k=0; k<gs.getNumOps(); k++){
+			if(gs.opAt(k).kind == op.kind)
+				return k;
+		}
+		return -1;
+	}
+
+	public String toString(){
+		return first + " " + op + " " + second;
+	}
+}
@@ -4,7 +4,7 @@ import java.util.ArrayList;
 import java.util.Scanner;
 import java.util.Stack;
 
-import solver.PuzzleSolver;
+import solver.SimplestSolver;
 import back_end.CombineException;
 import back_end.GameState;
 import back_end.Move;
@@ -17,7 +17,7 @@ public class ConsoleSolverTest {
 		String command = "";
 		Scanner inputParser;
 		GameState gs;
-		PuzzleSolver solver = new PuzzleSolver();
+		SimplestSolver solver = new SimplestSolver();
 		Stack<Move> solution;
 		
 		while(true){
@@ -38,6 +38,8 @@ public class ConsoleSolverTest {
 			gs = new GameState(pieces, ops, pieces.length, ops.length, goal, true);
 			solution = solver.solve(gs);
 			printSolution(solution, gs);
+			if(solution != null)
+				System.out.println("Cost: " + solver.getSolutionCost());
 		}
 	}
 	
@@ -0,0 +1,107 @@
+package tests;
+
+import java.lang.reflect.Method;
+import java.util.Random;
+import java.util.function.IntBinaryOperator;
+
+import solver.PuzzleSolver;
+import back_end.GameState;
+import back_end.Operation;
+
+/**
+ * Compares a custom + (bound from a lambda and from a Method) with the pre-built PLUS, and with calling the same
+ * Method reflectively, both on raw evaluations and on solving a fixed, seeded set of rolls.
+ *
+ * Run one variant per JVM (builtin, lambda, method or reflective): every custom operation is applied from the same call
+ * site in Operation.evaluate, so measuring several in one run stops the JIT inlining any of them.
+ *
+ * The solve numbers include a difference in pruning, so they aren't like-for-like between builtin and the custom
+ * variants: a custom operation could do anything, so the solver can't bound how large its results get and gives up
+ * magnitude pruning (see MagnitudeBound). The custom variants search more nodes but skip the bound's work at each one,
+ * so neither the total time nor the time per node (both printed) isolates the cost of applying the operation. The
+ * evaluate numbers do, and the custom variants can be compared with each other on either.
+ */
+public class CustomOpBenchmark {
+
+	private static final long SEED = 12345;
+	private static final int EVALUATIONS = 50000000;
+
+	public static int plus(int first, int second){
+		return first + second;
+	}
+
+	public static void main(String args[]) throws Exception {
+		String variant = args.length > 0 ? args[0] : "method";
+		int reps = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+		final Method plusMethod = CustomOpBenchmark.class.getMethod("plus", int.class, int.class);
+
+		Operation plus;
+		if(variant.equals("builtin")){
+			plus = new Operation(Operation.PLUS);
+		}
+		else if(variant.equals("lambda")){
+			plus = new Operation(new IntBinaryOperator(){
+				@Override
+				public int applyAsInt(int first, int second){
+					return first + second;
+				}
+			}, true, "+");
+		}
+		else if(variant.equals("method")){
+			plus = new Operation(plusMethod, true, "+");
+		}
+		else if(variant.equals("reflective")){
+			plus = new Operation(new IntBinaryOperator(){
+				@Override
+				public int applyAsInt(int first, int second){
+					try {
+						return (Integer) plusMethod.invoke(null, first, second);
+					} catch (Exception e) {
+						throw new IllegalStateException(e);
+					}
+				}
+			}, true, "+");
+		}
+		else{
+			System.out.println("Usage: CustomOpBenchmark [builtin|lambda|method|reflective] [reps]");
+			return;
+		}
+
+		for(int round=0; round<3; round++){ //the first round is warmup
+			System.out.println(round == 0 ? "Warmup:" : "Measured:");
+			evaluate(variant, plus);
+			solve(variant, plus, reps);
+		}
+	}
+
+	private static void evaluate(String name, Operation op){
+		long sum = 0;
+		long start = System.nanoTime();
+		for(int e=0; e<EVALUATIONS; e++)
+			sum += op.evaluate(e & 511, (e >>> 9) & 511);
+		long elapsed = System.nanoTime() - start;
+		System.out.println("  evaluate, " + name + ": " + (float)elapsed/EVALUATIONS + "ns per call (checksum " + sum + ")");
+	}
+
+	//solves rolls with the given op standing in for PLUS alongside the other default ops
+	private static void solve(String name, Operation plus, int reps){
+		Random random = new Random(SEED);
+		PuzzleSolver solver = new PuzzleSolver();
+		int numSolvable = 0;
+		long start = System.nanoTime();
+		for(int r=0; r<reps; r++){
+			Operation ops[] = GameState.defaultOps();
+			ops[0] = plus;
+			int pieces[] = new int[GameState.DEFAULT_NUM_PIECES];
+			for(int i=0; i<pieces.length; i++)
+				pieces[i] = random.nextInt(GameState.DEFAULT_MAX_PIECE) + 1;
+			int goal = random.nextInt(GameState.DEFAULT_MAX_GOAL - GameState.DEFAULT_MIN_GOAL) + GameState.DEFAULT_MIN_GOAL;
+			if(solver.solve(new GameState(pieces, ops, pieces.length, ops.length, goal, true)) != null)
+				numSolvable++;
+		}
+		long elapsed = System.nanoTime() - start;
+		System.out.println("  solve, " + name + ": solved " + numSolvable + "/" + reps + ", "
+				+ solver.getNodesExpanded() + " nodes in " + elapsed/1000000 + "ms"
+				+ " (" + (float)elapsed/solver.getNodesExpanded() + "ns per node)");
+	}
+}
@@ -0,0 +1,80 @@
+package tests;
+
+import java.util.Random;
+import java.util.Stack;
+
+import solver.MeetInTheMiddleSolver;
+import solver.ReachabilitySolver;
+import back_end.CombineException;
+import back_end.GameState;
+import back_end.Move;
+import back_end.Operation;
+
+/**
+ * Checks MeetInTheMiddleSolver against ReachabilitySolver on seeded random puzzles of up to 7 pieces, using every
+ * pre-built operation, then times it on 10 piece rolls.
+ */
+public class MeetInTheMiddleTester {
+
+	private static final long SEED = 12345;
+
+	public static void main(String args[]) throws CombineException {
+		int reps = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		Random random = new Random(SEED);
+		MeetInTheMiddleSolver solver = new MeetInTheMiddleSolver();
+		ReachabilitySolver reference = new ReachabilitySolver();
+
+		int numSolvable = 0;
+		int numWrong = 0;
+		for(int r=0; r<reps; r++){
+			GameState gs = randomPuzzle(random, random.nextInt(7) + 1);
+			boolean expected = reference.analyze(gs).isReachable(gs.getGoal());
+			Stack<Move> solution = solver.solve(gs);
+			if((solution != null) != expected || (solution != null && !wins(gs, solution))){
+				numWrong++;
+				System.out.println("Wrong answer for:\n" + gs);
+			}
+			if(expected)
+				numSolvable++;
+		}
+		System.out.println("Checked " + reps + " puzzles (" + numSolvable + " solvable), " + numWrong + " wrong");
+
+		for(int r=0; r<10; r++){
+			int pieces[] = new int[GameState.MAX_PIECES];
+			for(int i=0; i<pieces.length; i++)
+				pieces[i] = random.nextInt(GameState.DEFAULT_MAX_PIECE) + 1;
+			GameState gs = new GameState(pieces, GameState.defaultOps(), pieces.length, 5, random.nextInt(1999) - 999, true);
+			long start = System.nanoTime();
+			boolean solvable = solver.solve(gs) != null;
+			System.out.println("10 pieces, goal " + gs.getGoal() + ": " + (solvable ? "solved" : "no solution") + " in "
+					+ (System.nanoTime() - start)/1000000 + "ms");
+		}
+	}
+
+	//pieces from -6 to 12, a random subset of the pre-built operations, and a goal anywhere in the legal range
+	private static GameState randomPuzzle(Random random, int numPieces){
+		int pieces[] = new int[numPieces];
+		for(int i=0; i<numPieces; i++)
+			pieces[i] = random.nextInt(19) - 6;
+		Operation ops[] = new Operation[Operation.MODULO + 1];
+		int numOps = 0;
+		for(int opCode=Operation.PLUS; opCode<=Operation.MODULO; opCode++){
+			if(random.nextBoolean())
+				ops[numOps++] = new Operation(opCode);
+		}
+		if(numOps == 0)
+			ops[numOps++] = new Operation(Operation.PLUS);
+		int goal = random.nextBoolean() ? random.nextInt(101) - 50 : random.nextInt(1999) - 999;
+		return new GameState(pieces, ops, numPieces, numOps, goal, true);
+	}
+
+	//plays out the solution on a copy of gs
+	private static boolean wins(GameState gs, Stack<Move> solution) throws CombineException {
+		GameState played = new GameState(gs);
+		Stack<Move> moves = new Stack<Move>();
+		moves.addAll(solution);
+		while(!moves.isEmpty())
+			played.combine(moves.pop());
+		return played.getNumPieces() == 1 && played.pieceAt(0) == played.getGoal();
+	}
+}
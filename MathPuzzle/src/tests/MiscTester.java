@@ -1,8 +1,11 @@
 package tests;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Stack;
 
-import solver.PuzzleSolver;
+import solver.BatchSolver;
+import solver.NearestSolver;
 import back_end.GameState;
 import back_end.Move;
 
@@ -14,20 +17,27 @@ public class MiscTester {
 	
 	private static void percentSolvable(int reps){
 		int numSolvable = 0;
-		GameState gs;
-		PuzzleSolver solver = new PuzzleSolver();
-		Stack<Move> solution;
+		BatchSolver solver = new BatchSolver();
+		NearestSolver nearestSolver = new NearestSolver();
+		long totalMiss = 0; //summed distance from the goal of the closest value of each unsolvable roll
+		
+		List<GameState> rolls = new ArrayList<GameState>(reps);
+		for(int i=0; i<reps; i++)
+			rolls.add(new GameState());
+		List<Stack<Move>> solutions = solver.solveAll(rolls);
+		solver.shutdown();
 		
 		for(int i=0; i<reps; i++){
-			System.out.println("Test #" + i + "...");
-			gs = new GameState();
-			solution = solver.solve(gs);
-			if(solution != null)
+			if(solutions.get(i) != null)
 				numSolvable++;
+			else
+				totalMiss += nearestSolver.solve(rolls.get(i)).distance;
 		}
 		
 		System.out.println("Tried " + reps + " rolls, solved " + numSolvable + " of them.");
 		System.out.println("That's " + (float)numSolvable / (float)reps * 100 + "%");
+		if(numSolvable < reps)
+			System.out.println("Unsolvable rolls could get within " + (float)totalMiss / (reps - numSolvable) + " of the goal on average.");
 	}
 	
 }
@@ -0,0 +1,93 @@
+package tests;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Random;
+
+import solver.BatchSolver;
+import solver.PuzzleSolver;
+import solver.SolveStats;
+import back_end.GameState;
+
+/**
+ * Rough measurement of solver throughput and allocation on a fixed, seeded set of rolls.
+ * Allocation is read from the HotSpot per-thread allocation counter. Finishes with where one solver's nodes and illegal
+ * moves went, from SolveStats.
+ */
+public class SolverBenchmark {
+
+	private static final long SEED = 12345;
+
+	public static void main(String args[]){
+		int numPieces = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+		int reps = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+
+		GameState corpus[] = corpus(numPieces, reps);
+		run("warmup", new PuzzleSolver(), corpus);
+		run("PuzzleSolver", new PuzzleSolver(), corpus);
+		run("PuzzleSolver (memoizing)", new PuzzleSolver(true), corpus);
+		runBatch(corpus, false);
+		runBatch(corpus, true);
+		runWithStats(corpus);
+	}
+
+	private static GameState[] corpus(int numPieces, int reps){
+		Random random = new Random(SEED);
+		GameState corpus[] = new GameState[reps];
+		for(int r=0; r<reps; r++){
+			int pieces[] = new int[numPieces];
+			for(int i=0; i<numPieces; i++)
+				pieces[i] = random.nextInt(6) + 1;
+			int goal = random.nextInt(50) + 20;
+			corpus[r] = new GameState(pieces, GameState.defaultOps(), numPieces, 5, goal, true);
+		}
+		return corpus;
+	}
+
+	private static void run(String name, PuzzleSolver solver, GameState corpus[]){
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long threadId = Thread.currentThread().getId();
+
+		int numSolvable = 0;
+		long bytesBefore = threads.getThreadAllocatedBytes(threadId);
+		long start = System.nanoTime();
+		for(GameState gs : corpus){
+			if(solver.solve(gs) != null)
+				numSolvable++;
+		}
+		long elapsed = System.nanoTime() - start;
+		long bytes = threads.getThreadAllocatedBytes(threadId) - bytesBefore;
+
+		System.out.println(name + ": solved " + numSolvable + "/" + corpus.length
+				+ ", " + solver.getNodesExpanded() + " nodes in " + elapsed/1000000 + "ms"
+				+ " (" + (long)(solver.getNodesExpanded() / (elapsed / 1e9)) + " nodes/s)"
+				+ ", " + bytes/corpus.length + " bytes allocated per solve"
+				+ " (" + (float)bytes/solver.getNodesExpanded() + " per node)");
+	}
+
+	private static void runWithStats(GameState corpus[]){
+		SolveStats stats = new SolveStats();
+		PuzzleSolver solver = new PuzzleSolver();
+		for(GameState gs : corpus)
+			solver.solve(gs, stats);
+		System.out.println("PuzzleSolver, with statistics: " + stats);
+	}
+
+	private static void runBatch(GameState corpus[], boolean sharedCache){
+		BatchSolver solver = new BatchSolver();
+		solver.setSharedCache(sharedCache);
+		long start = System.nanoTime();
+		int numSolvable = 0;
+		for(Object solution : solver.solveAll(Arrays.asList(corpus))){
+			if(solution != null)
+				numSolvable++;
+		}
+		long elapsed = System.nanoTime() - start;
+		solver.shutdown();
+
+		System.out.println("BatchSolver (" + Runtime.getRuntime().availableProcessors() + " threads"
+				+ (sharedCache ? ", shared cache" : "") + "): solved "
+				+ numSolvable + "/" + corpus.length + ", " + solver.getNodesExpanded() + " nodes in " + elapsed/1000000 + "ms"
+				+ " (" + (long)(corpus.length / (elapsed / 1e9)) + " puzzles/s), " + solver.getCacheSize() + " cached states");
+	}
+}
@@ -0,0 +1,27 @@
+package benchmarks;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler always on, so every throughput comes with its allocation rate
+ * (gc.alloc.rate.norm is bytes allocated per operation). Takes JMH's usual command line: a regex of benchmarks to run,
+ * -rf json -rff results.json to save results for comparing runs, and so on.
+ *
+ * @author Kelton Finch
+ */
+public class BenchmarkRunner {
+
+	public static void main(String args[]) throws Exception {
+		CommandLineOptions commandLine = new CommandLineOptions(args);
+		if(commandLine.shouldHelp() || commandLine.shouldList() || commandLine.shouldListProfilers()
+				|| commandLine.shouldListResultFormats() || commandLine.shouldListWithParams()){
+			Main.main(args);
+			return;
+		}
+		new Runner(new OptionsBuilder().parent(commandLine).addProfiler(GCProfiler.class).build()).run();
+	}
+}
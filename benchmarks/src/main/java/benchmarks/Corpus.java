@@ -0,0 +1,50 @@
+package benchmarks;
+
+import java.util.Random;
+
+import solver.MeetInTheMiddleSolver;
+import back_end.GameState;
+import back_end.Operation;
+
+/**
+ * Fixed, seeded sets of rolls for the benchmarks, so every run (and every commit) measures the same puzzles.
+ *
+ * @author Kelton Finch
+ */
+final class Corpus {
+
+	static final long SEED = 12345;
+	private static final int TRIES_PER_ROLL = 1000; //unsolvable rolls of 8 pieces are about one in a thousand
+
+	private Corpus(){ }
+
+	/**
+	 * Rolls puzzles of default dice with goals anywhere in the legal range, keeping the first size of them that are
+	 * (or aren't) solvable. Solvability is decided by MeetInTheMiddleSolver, which is quick for every size used here.
+	 * @throws IllegalStateException if enough aren't found in TRIES_PER_ROLL tries per puzzle wanted.
+	 */
+	static GameState[] rolls(int numPieces, boolean solvable, int size){
+		Random random = new Random(SEED);
+		MeetInTheMiddleSolver checker = new MeetInTheMiddleSolver();
+		GameState corpus[] = new GameState[size];
+		int found = 0;
+		for(int tries=0; tries<TRIES_PER_ROLL*size && found<size; tries++){
+			GameState gs = roll(random, numPieces);
+			if(checker.isSolvable(gs) == solvable)
+				corpus[found++] = gs;
+		}
+		if(found < size)
+			throw new IllegalStateException("Only found " + found + (solvable ? " solvable" : " unsolvable") + " rolls of "
+					+ numPieces + " pieces");
+		return corpus;
+	}
+
+	static GameState roll(Random random, int numPieces){
+		int pieces[] = new int[numPieces];
+		for(int i=0; i<numPieces; i++)
+			pieces[i] = random.nextInt(GameState.DEFAULT_MAX_PIECE) + 1;
+		int goal = random.nextInt(GameState.MAX_PIECE_SIZE - GameState.MIN_PIECE_SIZE + 1) + GameState.MIN_PIECE_SIZE;
+		Operation ops[] = GameState.defaultOps();
+		return new GameState(pieces, ops, numPieces, ops.length, goal, true);
+	}
+}
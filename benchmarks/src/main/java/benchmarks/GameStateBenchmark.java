@@ -0,0 +1,81 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import back_end.CombineException;
+import back_end.GameState;
+import back_end.Move;
+
+/**
+ * GameState.afterCombine, which the game calls for every move (and which copies the state), cycling through every
+ * legal first move of some seeded default rolls.
+ *
+ * @author Kelton Finch
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameStateBenchmark {
+
+	private static final int NUM_ROLLS = 64;
+
+	private GameState states[]; //states[m] is the state moves[m] is made from
+	private Move moves[];
+	private int next;
+
+	@Setup
+	public void setUp() throws CombineException {
+		Random random = new Random(Corpus.SEED);
+		List<GameState> fromStates = new ArrayList<GameState>();
+		List<Move> legalMoves = new ArrayList<Move>();
+		for(int r=0; r<NUM_ROLLS; r++){
+			GameState gs = Corpus.roll(random, GameState.DEFAULT_NUM_PIECES);
+			for(int i=0; i<gs.getNumPieces(); i++){
+				for(int j=0; j<gs.getNumPieces(); j++){
+					for(int k=0; k<gs.getNumOps(); k++){
+						Move m = new Move(i, j, k);
+						if(i != j && isLegal(gs, m)){
+							fromStates.add(gs);
+							legalMoves.add(m);
+						}
+					}
+				}
+			}
+		}
+		states = fromStates.toArray(new GameState[fromStates.size()]);
+		moves = legalMoves.toArray(new Move[legalMoves.size()]);
+	}
+
+	@Benchmark
+	public GameState afterCombine() throws CombineException {
+		int m = next;
+		next = m+1 == moves.length ? 0 : m+1;
+		return states[m].afterCombine(moves[m]);
+	}
+
+	private static boolean isLegal(GameState gs, Move m){
+		try {
+			gs.afterCombine(m);
+			return true;
+		} catch (CombineException e) {
+			return false;
+		}
+	}
+}
@@ -0,0 +1,61 @@
+package benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import solver.PuzzleGenerator;
+import back_end.GameState;
+
+/**
+ * Generating a puzzle the way GamePanel does for a new game: default parameters, dice roll weighting, and no atlas
+ * (as when there's no atlas file), so rolls are analyzed by the generator itself.
+ *
+ * "warm" keeps one generator, so most rolls are answered from its cache, as in a long session. "cold" starts a new
+ * generator for every puzzle, as after the game parameters are changed, so every roll is analyzed.
+ *
+ * @author Kelton Finch
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GenerationBenchmark {
+
+	@Param({"warm", "cold"})
+	public String cache;
+
+	private Random random;
+	private PuzzleGenerator generator;
+
+	@Setup
+	public void setUp(){
+		random = new Random(Corpus.SEED);
+		generator = newGenerator();
+	}
+
+	@Benchmark
+	public GameState next(){
+		if(cache.equals("cold"))
+			generator = newGenerator();
+		return generator.next();
+	}
+
+	private PuzzleGenerator newGenerator(){
+		return new PuzzleGenerator(GameState.DEFAULT_MIN_GOAL, GameState.DEFAULT_MAX_GOAL, GameState.DEFAULT_NUM_PIECES,
+				GameState.DEFAULT_MAX_PIECE, PuzzleGenerator.Weighting.DICE_ROLL, random, null);
+	}
+}
@@ -0,0 +1,75 @@
+package benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import back_end.CombineException;
+import back_end.Operation;
+
+/**
+ * A single pre-built operation on seeded operands from -30 to 30, which include illegal combinations (dividing by zero,
+ * fractions, results out of range) at about the rate small pieces give them. operate is what moves in the game go
+ * through, and throws on illegal combinations; evaluate is what the solvers call, and returns an error code instead.
+ *
+ * @author Kelton Finch
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OperationBenchmark {
+
+	private static final int NUM_PAIRS = 1024; //a power of two, for cycling through them with a mask
+	private static final String OP_NAMES[] = {"PLUS", "MINUS", "TIMES", "DIVIDE", "EXPONENT", "ROOT", "MODULO"};
+
+	@Param({"PLUS", "MINUS", "TIMES", "DIVIDE", "EXPONENT", "ROOT", "MODULO"})
+	public String opName;
+
+	private Operation op;
+	private final int firsts[] = new int[NUM_PAIRS];
+	private final int seconds[] = new int[NUM_PAIRS];
+	private int next;
+
+	@Setup
+	public void setUp(){
+		int opCode = 0;
+		while(!OP_NAMES[opCode].equals(opName))
+			opCode++;
+		op = new Operation(opCode);
+		Random random = new Random(Corpus.SEED);
+		for(int p=0; p<NUM_PAIRS; p++){
+			firsts[p] = random.nextInt(61) - 30;
+			seconds[p] = random.nextInt(61) - 30;
+		}
+	}
+
+	@Benchmark
+	public int operate(){
+		int p = next++ & (NUM_PAIRS-1);
+		try {
+			return op.operate(firsts[p], seconds[p]);
+		} catch (CombineException e) {
+			return 0;
+		}
+	}
+
+	@Benchmark
+	public int evaluate(){
+		int p = next++ & (NUM_PAIRS-1);
+		return op.evaluate(firsts[p], seconds[p]);
+	}
+}
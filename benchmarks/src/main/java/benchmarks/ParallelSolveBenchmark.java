@@ -0,0 +1,94 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import solver.ParallelPuzzleSolver;
+import solver.PuzzleSolver;
+import back_end.GameState;
+
+/**
+ * ParallelPuzzleSolver against PuzzleSolver on the same seeded corpora as SolveBenchmark, in puzzles solved per second.
+ *
+ * threads is the parallel solver's pool size: 1 shows what splitting the search costs on its own, and 0 uses one
+ * thread per available processor. A speedup needs that many idle cores, so only compare runs on the same machine.
+ *
+ * @author Kelton Finch
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParallelSolveBenchmark {
+
+	@State(Scope.Benchmark)
+	public static class Rolls {
+		@Param({"5", "6", "7"})
+		public int numPieces;
+
+		@Param({"true", "false"})
+		public boolean solvable;
+
+		GameState corpus[];
+
+		@Setup
+		public void roll(){
+			corpus = Corpus.rolls(numPieces, solvable, SolveBenchmark.CORPUS_SIZE);
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class Pool {
+		@Param({"1", "0"})
+		public int threads;
+
+		ParallelPuzzleSolver solver;
+
+		@Setup
+		public void start(){
+			solver = threads == 0 ? new ParallelPuzzleSolver() : new ParallelPuzzleSolver(threads);
+		}
+
+		@TearDown
+		public void stop(){
+			solver.shutdown();
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SolveBenchmark.CORPUS_SIZE)
+	public int sequential(Rolls rolls){
+		PuzzleSolver solver = new PuzzleSolver();
+		int numSolved = 0;
+		for(GameState gs : rolls.corpus){
+			if(solver.solve(gs) != null)
+				numSolved++;
+		}
+		return numSolved;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SolveBenchmark.CORPUS_SIZE)
+	public int parallel(Rolls rolls, Pool pool){
+		int numSolved = 0;
+		for(GameState gs : rolls.corpus){
+			if(pool.solver.solve(gs) != null)
+				numSolved++;
+		}
+		return numSolved;
+	}
+}
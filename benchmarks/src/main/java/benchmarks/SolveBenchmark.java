@@ -0,0 +1,109 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import solver.PuzzleSolver;
+import back_end.GameState;
+
+/**
+ * PuzzleSolver.solve on seeded corpora of solvable and unsolvable rolls, in puzzles solved per second.
+ * Each invocation solves the whole corpus with a new solver, as a fresh game would.
+ *
+ * solvable and unsolvable always search, whatever the size. meetInTheMiddle solves the 9 and 10 piece rolls with
+ * the solver set to hand them to MeetInTheMiddleSolver (see PuzzleSolver.setMeetInTheMiddle), as AsyncSolver does.
+ *
+ * Dice rolls of 9 or 10 pieces can reach practically every goal in range (none of 2000 seeded rolls of either size
+ * can't), so the unsolvable corpora stop at 8 pieces. Even those are rare: the 8 piece corpus takes a while to roll.
+ *
+ * @author Kelton Finch
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SolveBenchmark {
+
+	static final int CORPUS_SIZE = 8;
+
+	@State(Scope.Benchmark)
+	public static class Solvable {
+		@Param({"5", "6", "7", "8", "9", "10"})
+		public int numPieces;
+
+		GameState corpus[];
+
+		@Setup
+		public void roll(){
+			corpus = Corpus.rolls(numPieces, true, CORPUS_SIZE);
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class Large {
+		@Param({"9", "10"})
+		public int numPieces;
+
+		GameState corpus[];
+
+		@Setup
+		public void roll(){
+			corpus = Corpus.rolls(numPieces, true, CORPUS_SIZE);
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class Unsolvable {
+		@Param({"5", "6", "7", "8"})
+		public int numPieces;
+
+		GameState corpus[];
+
+		@Setup
+		public void roll(){
+			corpus = Corpus.rolls(numPieces, false, CORPUS_SIZE);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(CORPUS_SIZE)
+	public int solvable(Solvable rolls){
+		return solveAll(rolls.corpus, false);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(CORPUS_SIZE)
+	public int unsolvable(Unsolvable rolls){
+		return solveAll(rolls.corpus, false);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(CORPUS_SIZE)
+	public int meetInTheMiddle(Large rolls){
+		return solveAll(rolls.corpus, true);
+	}
+
+	private static int solveAll(GameState corpus[], boolean meetInTheMiddle){
+		PuzzleSolver solver = new PuzzleSolver();
+		solver.setMeetInTheMiddle(meetInTheMiddle);
+		int numSolved = 0;
+		for(int r=0; r<corpus.length; r++){
+			if(solver.solve(corpus[r]) != null)
+				numSolved++;
+		}
+		return numSolved;
+	}
+}